@@ -0,0 +1,36 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.service.Hedger;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Enables the hedging of the vendor calls with the {@code tourguide.hedging.enabled} property,
+ * and publishes the hedging counters as metrics.
+ */
+@Configuration
+public class HedgingConfig {
+
+	public HedgingConfig(TourGuideService tourGuideService, RewardsService rewardsService, MeterRegistry meterRegistry,
+						 @Value("${tourguide.hedging.enabled:false}") boolean enabled) {
+		register(tourGuideService.getUserLocationHedger(), enabled, meterRegistry);
+		register(rewardsService.getRewardPointsHedger(), enabled, meterRegistry);
+	}
+
+	private void register(Hedger hedger, boolean enabled, MeterRegistry meterRegistry) {
+		hedger.setEnabled(enabled);
+		FunctionCounter.builder("tourguide.hedging.calls", hedger, Hedger::getCalls)
+				.tags("call", hedger.getName())
+				.register(meterRegistry);
+		FunctionCounter.builder("tourguide.hedging.fired", hedger, Hedger::getHedges)
+				.tags("call", hedger.getName())
+				.register(meterRegistry);
+		FunctionCounter.builder("tourguide.hedging.won", hedger, Hedger::getHedgeWins)
+				.tags("call", hedger.getName())
+				.register(meterRegistry);
+	}
+}
@@ -0,0 +1,23 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.UserFootprints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Trims the histories of the users above {@code tourguide.memory.max-visited-locations} locations per user,
+ * or once the estimated size of the user store goes over {@code tourguide.memory.max-total-megabytes}.
+ * Both default to 0, histories are then kept whole.
+ */
+@Configuration
+public class MemoryConfig {
+
+	public MemoryConfig(TourGuideService tourGuideService,
+						@Value("${tourguide.memory.max-visited-locations:0}") int maxVisitedLocations,
+						@Value("${tourguide.memory.max-total-megabytes:0}") long maxTotalMegabytes) {
+		UserFootprints userFootprints = tourGuideService.getUserFootprints();
+		userFootprints.setMaxVisitedLocations(maxVisitedLocations);
+		userFootprints.setMaxTotalBytes(maxTotalMegabytes * 1024 * 1024);
+	}
+}
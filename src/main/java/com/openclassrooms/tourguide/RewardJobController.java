@@ -0,0 +1,78 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.service.RewardRecalculationJob;
+import com.openclassrooms.tourguide.service.RewardRecalculationService;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collection;
+import java.util.function.Predicate;
+
+/**
+ * Bulk recalculations of the users' rewards. Each response reports the job's progress, its RewardCentral calls,
+ * its throughput in users per second and its estimated time to completion.
+ */
+@RestController
+public class RewardJobController {
+
+    private final RewardRecalculationService rewardRecalculationService;
+
+    public RewardJobController(RewardRecalculationService rewardRecalculationService) {
+        this.rewardRecalculationService = rewardRecalculationService;
+    }
+
+    @RequestMapping("/startRewardJob")
+    public RewardRecalculationJob startRewardJob(
+            @RequestParam(defaultValue = "" + RewardRecalculationService.DEFAULT_CHUNK_SIZE) int chunkSize,
+            @RequestParam(defaultValue = "" + RewardRecalculationService.DEFAULT_CALLS_PER_SECOND) int callsPerSecond) {
+        try {
+            return rewardRecalculationService.start(chunkSize, callsPerSecond);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @RequestMapping("/getRewardJobs")
+    public Collection<RewardRecalculationJob> getRewardJobs() {
+        return rewardRecalculationService.getJobs();
+    }
+
+    @RequestMapping("/getRewardJob")
+    public RewardRecalculationJob getRewardJob(@RequestParam String jobId) {
+        return getJob(jobId);
+    }
+
+    @RequestMapping("/pauseRewardJob")
+    public RewardRecalculationJob pauseRewardJob(@RequestParam String jobId) {
+        return control(jobId, rewardRecalculationService::pause);
+    }
+
+    @RequestMapping("/resumeRewardJob")
+    public RewardRecalculationJob resumeRewardJob(@RequestParam String jobId) {
+        return control(jobId, rewardRecalculationService::resume);
+    }
+
+    @RequestMapping("/cancelRewardJob")
+    public RewardRecalculationJob cancelRewardJob(@RequestParam String jobId) {
+        return control(jobId, rewardRecalculationService::cancel);
+    }
+
+    private RewardRecalculationJob control(String jobId, Predicate<RewardRecalculationJob> action) {
+        RewardRecalculationJob job = getJob(jobId);
+        if (!action.test(job)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Job " + jobId + " is " + job.getStatus());
+        }
+        return job;
+    }
+
+    private RewardRecalculationJob getJob(String jobId) {
+        RewardRecalculationJob job = rewardRecalculationService.getJob(jobId);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown job " + jobId);
+        }
+        return job;
+    }
+}
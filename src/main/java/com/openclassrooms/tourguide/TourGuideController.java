@@ -1,24 +1,52 @@
 package com.openclassrooms.tourguide;
 
+import com.openclassrooms.tourguide.dto.HotAttractionDTO;
 import com.openclassrooms.tourguide.dto.NearbyAttractionDTO;
+import com.openclassrooms.tourguide.dto.NearbyUserDTO;
 import com.openclassrooms.tourguide.dto.user.User;
 import com.openclassrooms.tourguide.dto.user.UserReward;
+import com.openclassrooms.tourguide.service.AttractionCounters;
+import com.openclassrooms.tourguide.service.ExportFormat;
 import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.TripDealsPrecomputer.TripDeals;
+import com.openclassrooms.tourguide.service.UserEventHub.Subscription;
+import com.openclassrooms.tourguide.service.UserExportService;
+import com.openclassrooms.tourguide.web.SseEventSink;
+import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import tripPricer.Provider;
 
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 public class TourGuideController {
+	// Clients reconnect when their stream times out
+	private static final long SUBSCRIPTION_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+	private static final String TRIP_DEALS_COMPUTED_AT_HEADER = "X-Trip-Deals-Computed-At";
+	private static final String TRIP_DEALS_AGE_HEADER = "X-Trip-Deals-Age-Seconds";
+	private static final String TRIP_DEALS_STALE_HEADER = "X-Trip-Deals-Stale";
+	// Beyond it the response would list a large share of the users, /exportUsers is meant for that
+	private static final double MAX_RADIUS_MILES = 500;
 
 	TourGuideService tourGuideService;
+	UserExportService userExportService;
 
-    public TourGuideController(TourGuideService tourGuideService) {
+    public TourGuideController(TourGuideService tourGuideService, UserExportService userExportService) {
         this.tourGuideService = tourGuideService;
+        this.userExportService = userExportService;
     }
 	
     @RequestMapping("/")
@@ -36,18 +64,130 @@ public class TourGuideController {
     	return tourGuideService.getTopFiveNearbyAttractions(getUser(userName));
     }
     
+    @RequestMapping("/getUsersNearAttraction")
+    public List<NearbyUserDTO> getUsersNearAttraction(@RequestParam String attractionName, @RequestParam double radius) {
+        if (!(radius > 0) || radius > MAX_RADIUS_MILES) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "radius must be between 0 and " + MAX_RADIUS_MILES + " miles");
+        }
+    	return tourGuideService.getUsersNearAttraction(getAttraction(attractionName), radius);
+    }
+
+    @RequestMapping("/getNearestUsers")
+    public List<NearbyUserDTO> getNearestUsers(@RequestParam String attractionName, @RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be positive");
+        }
+    	return tourGuideService.getNearestUsers(getAttraction(attractionName), limit);
+    }
+
+    /**
+     * Lists the attractions with the most rewards granted over the last minutes
+     *
+     * @param windowMinutes The window, from 1 to 15 minutes
+     * @param limit         The number of attractions
+     * @return The hottest attractions first
+     */
+    @RequestMapping("/getHotAttractions")
+    public List<HotAttractionDTO> getHotAttractions(@RequestParam(defaultValue = "5") int windowMinutes,
+                                                    @RequestParam(defaultValue = "10") int limit) {
+        if (windowMinutes < 1 || windowMinutes > AttractionCounters.MAX_WINDOW_MINUTES || limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "windowMinutes must be between 1 and " + AttractionCounters.MAX_WINDOW_MINUTES + ", limit positive");
+        }
+        return tourGuideService.getHotAttractions(windowMinutes, limit);
+    }
+
     @RequestMapping("/getRewards") 
     public List<UserReward> getRewards(@RequestParam String userName) {
     	return tourGuideService.getUserRewards(getUser(userName));
     }
        
+    @RequestMapping("/setAttractionProximity")
+    public List<UserReward> setAttractionProximity(@RequestParam String userName, @RequestParam int attractionProximity) {
+        if (attractionProximity <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "attractionProximity must be positive");
+        }
+    	return tourGuideService.setAttractionProximity(getUser(userName), attractionProximity);
+    }
+
+    /**
+     * Pushes the new visited locations and rewards of a user as server-sent events,
+     * named {@code location} and {@code reward}, instead of polling /getLocation and /getRewards
+     *
+     * @param userName The user
+     * @return The event stream
+     */
+    @RequestMapping(value = "/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestParam String userName) {
+        User user = getUser(userName);
+        if (user == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown user " + userName);
+        }
+        SseEmitter emitter = new SseEmitter(SUBSCRIPTION_TIMEOUT_MILLIS);
+        Subscription subscription = tourGuideService.getUserEventHub().subscribe(user, new SseEventSink(emitter));
+        if (subscription == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many subscribers");
+        }
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(e -> subscription.cancel());
+        return emitter;
+    }
+
+    /**
+     * Serves the trip deals precomputed in the background. The response headers tell when they were priced
+     * and whether they are stale, a recomputation being on its way
+     *
+     * @param userName The user
+     * @return The trip deals
+     */
     @RequestMapping("/getTripDeals")
-    public List<Provider> getTripDeals(@RequestParam String userName) {
-    	return tourGuideService.getTripDeals(getUser(userName));
+    public ResponseEntity<List<Provider>> getTripDeals(@RequestParam String userName) {
+        User user = getUser(userName);
+        TripDeals tripDeals = tourGuideService.getPrecomputedTripDeals(user);
+        long ageSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - tripDeals.computedAt().getTime());
+        return ResponseEntity.ok()
+                .header(TRIP_DEALS_COMPUTED_AT_HEADER, tripDeals.computedAt().toInstant().toString())
+                .header(TRIP_DEALS_AGE_HEADER, Long.toString(ageSeconds))
+                .header(TRIP_DEALS_STALE_HEADER, Boolean.toString(tourGuideService.isStale(user, tripDeals)))
+                .body(tripDeals.providers());
     }
     
+    /**
+     * Streams the visited locations and rewards of every user, with chunked transfer encoding
+     *
+     * @param format ndjson or csv
+     * @param from   Optional ISO date-time, only visits at or after it are exported
+     * @param to     Optional ISO date-time, only visits before it are exported
+     * @return The export, written while users are read from the store
+     */
+    @RequestMapping("/exportUsers")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to) {
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.fromName(format);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=users." + exportFormat.getFileExtension())
+                .body(out -> userExportService.export(out, exportFormat, from, to));
+    }
+
     private User getUser(String userName) {
     	return tourGuideService.getUser(userName);
     }
 
+    private Attraction getAttraction(String attractionName) {
+        Attraction attraction = tourGuideService.getAttraction(attractionName);
+        if (attraction == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown attraction " + attractionName);
+        }
+        return attraction;
+    }
+
 }
\ No newline at end of file
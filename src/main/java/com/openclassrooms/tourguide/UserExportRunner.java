@@ -0,0 +1,69 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.service.ExportFormat;
+import com.openclassrooms.tourguide.service.UserExportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Command line mode of the user export. When started with {@code --export.file=<path>},
+ * the application writes the export to that file and exits.
+ * <p>
+ * Optional arguments: {@code --export.format=ndjson|csv}, {@code --export.from=<ISO instant>}
+ * and {@code --export.to=<ISO instant>}. Add {@code --spring.main.web-application-type=none}
+ * to skip starting the web server. Users are not tracked in this mode, unless {@code tourguide.tracker.enabled} is set.
+ */
+@Component
+public class UserExportRunner implements ApplicationRunner {
+	private static final Logger logger = LoggerFactory.getLogger(UserExportRunner.class);
+
+	private final UserExportService userExportService;
+	private final ApplicationContext applicationContext;
+
+	public UserExportRunner(UserExportService userExportService, ApplicationContext applicationContext) {
+		this.userExportService = userExportService;
+		this.applicationContext = applicationContext;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		if (!args.containsOption("export.file")) {
+			return;
+		}
+
+		Path file = Path.of(args.getOptionValues("export.file").get(0));
+		ExportFormat format = ExportFormat.fromName(option(args, "export.format", "ndjson"));
+		Date from = toDate(option(args, "export.from", null));
+		Date to = toDate(option(args, "export.to", null));
+
+		long exported;
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+			exported = userExportService.export(out, format, from, to);
+		}
+		logger.info("Exported {} users to {}", exported, file);
+
+		System.exit(SpringApplication.exit(applicationContext, () -> 0));
+	}
+
+	private String option(ApplicationArguments args, String name, String defaultValue) {
+		List<String> values = args.getOptionValues(name);
+		return values == null || values.isEmpty() ? defaultValue : values.get(0);
+	}
+
+	private Date toDate(String isoInstant) {
+		return isoInstant == null ? null : Date.from(Instant.parse(isoInstant));
+	}
+}
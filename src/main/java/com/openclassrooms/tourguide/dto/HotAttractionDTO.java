@@ -0,0 +1,94 @@
+package com.openclassrooms.tourguide.dto;
+
+import java.util.StringJoiner;
+
+public class HotAttractionDTO {
+
+    private String attractionName;
+    private String city;
+    private String state;
+    private long totalRewards;
+    private long totalRewardPoints;
+    private long windowRewards;
+    private double rewardsPerMinute;
+
+    public HotAttractionDTO() {
+    }
+
+    public HotAttractionDTO(String attractionName, String city, String state, long totalRewards,
+                            long totalRewardPoints, long windowRewards, double rewardsPerMinute) {
+        this.attractionName = attractionName;
+        this.city = city;
+        this.state = state;
+        this.totalRewards = totalRewards;
+        this.totalRewardPoints = totalRewardPoints;
+        this.windowRewards = windowRewards;
+        this.rewardsPerMinute = rewardsPerMinute;
+    }
+
+    public String getAttractionName() {
+        return attractionName;
+    }
+
+    public void setAttractionName(String attractionName) {
+        this.attractionName = attractionName;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public long getTotalRewards() {
+        return totalRewards;
+    }
+
+    public void setTotalRewards(long totalRewards) {
+        this.totalRewards = totalRewards;
+    }
+
+    public long getTotalRewardPoints() {
+        return totalRewardPoints;
+    }
+
+    public void setTotalRewardPoints(long totalRewardPoints) {
+        this.totalRewardPoints = totalRewardPoints;
+    }
+
+    public long getWindowRewards() {
+        return windowRewards;
+    }
+
+    public void setWindowRewards(long windowRewards) {
+        this.windowRewards = windowRewards;
+    }
+
+    public double getRewardsPerMinute() {
+        return rewardsPerMinute;
+    }
+
+    public void setRewardsPerMinute(double rewardsPerMinute) {
+        this.rewardsPerMinute = rewardsPerMinute;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", HotAttractionDTO.class.getSimpleName() + "[", "]")
+                .add("attractionName='" + attractionName + "'")
+                .add("totalRewards=" + totalRewards)
+                .add("windowRewards=" + windowRewards)
+                .add("rewardsPerMinute=" + rewardsPerMinute)
+                .toString();
+    }
+}
@@ -0,0 +1,66 @@
+package com.openclassrooms.tourguide.dto;
+
+import gpsUtil.location.Location;
+
+import java.util.StringJoiner;
+import java.util.UUID;
+
+public class NearbyUserDTO {
+
+    private UUID userId;
+    private String userName;
+    private Location userLocation;
+    private double distance;
+
+    public NearbyUserDTO() {
+    }
+
+    public NearbyUserDTO(UUID userId, String userName, Location userLocation, double distance) {
+        this.userId = userId;
+        this.userName = userName;
+        this.userLocation = userLocation;
+        this.distance = distance;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public Location getUserLocation() {
+        return userLocation;
+    }
+
+    public void setUserLocation(Location userLocation) {
+        this.userLocation = userLocation;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    public void setDistance(double distance) {
+        this.distance = distance;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", NearbyUserDTO.class.getSimpleName() + "[", "]")
+                .add("userId=" + userId)
+                .add("userName='" + userName + "'")
+                .add("userLocation=" + userLocation.latitude + "/" + userLocation.longitude)
+                .add("distance=" + distance)
+                .toString();
+    }
+}
@@ -15,10 +15,10 @@ public class User {
 	private final String userName;
 	private String phoneNumber;
 	private String emailAddress;
-	private Date latestLocationTimestamp;
+	private volatile Date latestLocationTimestamp;
 	private final CopyOnWriteArrayList<VisitedLocation> visitedLocations = new CopyOnWriteArrayList<>();
 	private final CopyOnWriteArrayList<UserReward> userRewards = new CopyOnWriteArrayList<>();
-	private UserPreferences userPreferences = new UserPreferences();
+	private volatile UserPreferences userPreferences = new UserPreferences();
 	private List<Provider> tripDeals = new ArrayList<>();
 	public User(UUID userId, String userName, String phoneNumber, String emailAddress) {
 		this.userId = userId;
@@ -61,6 +61,9 @@ public class User {
 	
 	public void addToVisitedLocations(gpsUtil.location.VisitedLocation visitedLocation) {
 		visitedLocations.add(visitedLocation);
+		if (latestLocationTimestamp == null || visitedLocation.timeVisited.after(latestLocationTimestamp)) {
+			latestLocationTimestamp = visitedLocation.timeVisited;
+		}
 	}
 	
 	public List<gpsUtil.location.VisitedLocation> getVisitedLocations() {
@@ -70,11 +73,23 @@ public class User {
 	public void clearVisitedLocations() {
 		visitedLocations.clear();
 	}
+
+	/**
+	 * @param count The number of oldest visited locations to remove
+	 */
+	public void removeOldestVisitedLocations(int count) {
+		visitedLocations.subList(0, count).clear();
+	}
 	
-	public void addUserReward(UserReward userReward) {
+	/**
+	 * @return Whether the reward was added, a user only gets one reward per attraction.
+	 */
+	public boolean addUserReward(UserReward userReward) {
 		if(userRewards.stream().noneMatch(r -> r.attraction.attractionName.equals(userReward.attraction.attractionName))) {
 			userRewards.add(userReward);
+			return true;
 		}
+		return false;
 	}
 	
 	public List<UserReward> getUserRewards() {
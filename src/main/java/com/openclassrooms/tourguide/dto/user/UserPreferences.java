@@ -4,7 +4,8 @@ import java.util.StringJoiner;
 
 public class UserPreferences {
 	
-	private int attractionProximity = Integer.MAX_VALUE;
+	// proximity in miles, 0 until the user sets one, meaning the default proximity of the rewards service
+	private volatile int attractionProximity = 0;
 	private int tripDuration = 1;
 	private int ticketQuantity = 1;
 	private int numberOfAdults = 1;
@@ -0,0 +1,97 @@
+package com.openclassrooms.tourguide.helper;
+
+/**
+ * Minimal geohash encoding: the world is split alternately by longitude and latitude,
+ * five bits per base 32 character, so that locations sharing a prefix lie in the same cell.
+ */
+public class Geohash {
+
+	private static final String BASE_32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+	private Geohash() {
+		// Prevent instantiation
+	}
+
+	/**
+	 * @param latitude  The latitude in degrees.
+	 * @param longitude The longitude in degrees.
+	 * @param precision The number of characters of the hash.
+	 * @return The geohash of the cell containing the location.
+	 */
+	public static String encode(double latitude, double longitude, int precision) {
+		double minLatitude = -90;
+		double maxLatitude = 90;
+		double minLongitude = -180;
+		double maxLongitude = 180;
+		boolean evenBit = true;
+		int bit = 0;
+		int index = 0;
+		StringBuilder geohash = new StringBuilder(precision);
+
+		while (geohash.length() < precision) {
+			if (evenBit) {
+				double middle = (minLongitude + maxLongitude) / 2;
+				if (longitude >= middle) {
+					index = index * 2 + 1;
+					minLongitude = middle;
+				} else {
+					index = index * 2;
+					maxLongitude = middle;
+				}
+			} else {
+				double middle = (minLatitude + maxLatitude) / 2;
+				if (latitude >= middle) {
+					index = index * 2 + 1;
+					minLatitude = middle;
+				} else {
+					index = index * 2;
+					maxLatitude = middle;
+				}
+			}
+			evenBit = !evenBit;
+
+			if (++bit == 5) {
+				geohash.append(BASE_32.charAt(index));
+				bit = 0;
+				index = 0;
+			}
+		}
+		return geohash.toString();
+	}
+
+	/**
+	 * @param geohash The geohash of a cell.
+	 * @return The bounds of the cell: minimum latitude, minimum longitude, maximum latitude, maximum longitude.
+	 */
+	public static double[] bounds(String geohash) {
+		double minLatitude = -90;
+		double maxLatitude = 90;
+		double minLongitude = -180;
+		double maxLongitude = 180;
+		boolean evenBit = true;
+
+		for (int i = 0; i < geohash.length(); i++) {
+			int index = BASE_32.indexOf(geohash.charAt(i));
+			for (int n = 4; n >= 0; n--) {
+				boolean bitSet = ((index >> n) & 1) == 1;
+				if (evenBit) {
+					double middle = (minLongitude + maxLongitude) / 2;
+					if (bitSet) {
+						minLongitude = middle;
+					} else {
+						maxLongitude = middle;
+					}
+				} else {
+					double middle = (minLatitude + maxLatitude) / 2;
+					if (bitSet) {
+						minLatitude = middle;
+					} else {
+						maxLatitude = middle;
+					}
+				}
+				evenBit = !evenBit;
+			}
+		}
+		return new double[]{minLatitude, minLongitude, maxLatitude, maxLongitude};
+	}
+}
@@ -0,0 +1,132 @@
+package com.openclassrooms.tourguide.monitoring;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Starts, stops and dumps a JDK Flight Recorder recording of the running application, including the
+ * TourGuide events, without a restart:
+ * <ul>
+ *     <li>POST /actuator/flightrecording/start, optionally with durationSeconds and maxSizeMegabytes</li>
+ *     <li>POST /actuator/flightrecording/stop</li>
+ *     <li>GET /actuator/flightrecording/dump, the recording as a .jfr file</li>
+ *     <li>GET /actuator/flightrecording, the state of the recording</li>
+ * </ul>
+ * Recordings use the JDK's low-overhead "default" settings plus the TourGuide events, and are bounded in duration
+ * and size, so a forgotten recording stops by itself.
+ */
+@Component
+@Endpoint(id = "flightrecording")
+public class FlightRecordingEndpoint {
+	private static final Logger logger = LoggerFactory.getLogger(FlightRecordingEndpoint.class);
+	private static final Duration DEFAULT_DURATION = Duration.ofMinutes(5);
+	private static final Duration MAX_DURATION = Duration.ofMinutes(30);
+	private static final long DEFAULT_MAX_SIZE_MEGABYTES = 100;
+	private static final long MAX_SIZE_MEGABYTES = 500;
+	private static final String START = "start";
+	private static final String STOP = "stop";
+
+	private Recording recording;
+
+	@ReadOperation
+	public synchronized Map<String, Object> status() {
+		Map<String, Object> status = new LinkedHashMap<>();
+		status.put("state", recording == null ? "NONE" : recording.getState().name());
+		if (recording != null) {
+			status.put("startTime", recording.getStartTime());
+			status.put("duration", recording.getDuration());
+			status.put("sizeBytes", recording.getSize());
+		}
+		return status;
+	}
+
+	@WriteOperation
+	public synchronized Map<String, Object> control(@Selector String action,
+													 @Nullable Integer durationSeconds, @Nullable Integer maxSizeMegabytes)
+			throws IOException, ParseException {
+		switch (action) {
+			case START -> start(durationSeconds, maxSizeMegabytes);
+			case STOP -> stop();
+			default -> throw new InvalidEndpointRequestException("Unknown action " + action, "Expected start or stop");
+		}
+		return status();
+	}
+
+	/**
+	 * @param name Only {@code dump}
+	 * @return The current content of the recording, running or stopped, as a .jfr file.
+	 */
+	@ReadOperation(produces = "application/octet-stream")
+	public synchronized Resource dump(@Selector String name) throws IOException {
+		if (!"dump".equals(name) || recording == null || recording.getState() == RecordingState.NEW) {
+			return null;
+		}
+		Path file = Files.createTempFile("tourguide-", ".jfr");
+		recording.dump(file);
+		return new FileSystemResource(file) {
+			// The dump is read once, by the response, then deleted
+			@Override
+			public InputStream getInputStream() throws IOException {
+				return Files.newInputStream(file, StandardOpenOption.DELETE_ON_CLOSE);
+			}
+		};
+	}
+
+	private void start(Integer durationSeconds, Integer maxSizeMegabytes) throws IOException, ParseException {
+		if (recording != null && recording.getState() == RecordingState.RUNNING) {
+			throw new InvalidEndpointRequestException("A recording is already running", "Stop it first");
+		}
+		if (recording != null) {
+			recording.close();
+		}
+		if (durationSeconds != null && durationSeconds < 1 || maxSizeMegabytes != null && maxSizeMegabytes < 1) {
+			throw new InvalidEndpointRequestException("Invalid recording bounds",
+					"durationSeconds and maxSizeMegabytes must be positive");
+		}
+		Duration duration = durationSeconds == null ? DEFAULT_DURATION
+				: Duration.ofSeconds(Math.min(durationSeconds, MAX_DURATION.toSeconds()));
+		long maxSize = Math.min(maxSizeMegabytes == null ? DEFAULT_MAX_SIZE_MEGABYTES : maxSizeMegabytes, MAX_SIZE_MEGABYTES);
+
+		recording = new Recording(Configuration.getConfiguration("default"));
+		recording.setName("tourguide");
+		recording.setDuration(duration);
+		recording.setMaxSize(maxSize * 1024 * 1024);
+		// Keep the recording once its duration is over, so that it can still be dumped
+		recording.setToDisk(true);
+		recording.enable(UserTrackedEvent.class);
+		recording.enable(RewardsCalculatedEvent.class);
+		recording.enable(VendorCallEvent.class);
+		recording.enable(TrackerBatchEvent.class);
+		recording.start();
+		logger.info("Flight recording started for {}, at most {} MB", duration, maxSize);
+	}
+
+	private void stop() {
+		if (recording != null && recording.getState() == RecordingState.RUNNING) {
+			recording.stop();
+			logger.info("Flight recording stopped");
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.openclassrooms.tourguide.monitoring;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.UserFootprints;
+import com.openclassrooms.tourguide.service.UserFootprints.Footprint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports the estimated memory retained by the user store, to plan the capacity of a node:
+ * <ul>
+ *     <li>GET /actuator/memoryfootprint, the totals, histograms of history lengths and bytes per user, and thresholds</li>
+ *     <li>GET /actuator/memoryfootprint/{userName}, the estimate of a single user</li>
+ * </ul>
+ */
+@Component
+@Endpoint(id = "memoryfootprint")
+public class MemoryFootprintEndpoint {
+	private final TourGuideService tourGuideService;
+
+	public MemoryFootprintEndpoint(TourGuideService tourGuideService) {
+		this.tourGuideService = tourGuideService;
+	}
+
+	@ReadOperation
+	public Map<String, Object> footprint() {
+		UserFootprints userFootprints = tourGuideService.getUserFootprints();
+		long users = userFootprints.getUsers();
+		Map<String, Object> footprint = new LinkedHashMap<>();
+		footprint.put("users", users);
+		footprint.put("estimatedBytes", userFootprints.getTotalBytes());
+		footprint.put("averageBytesPerUser", users == 0 ? 0 : userFootprints.getTotalBytes() / users);
+		footprint.put("visitedLocations", userFootprints.getVisitedLocations());
+		footprint.put("userRewards", userFootprints.getUserRewards());
+		footprint.put("tripDeals", userFootprints.getTripDeals());
+		footprint.put("precomputedTripDeals", userFootprints.getPrecomputedTripDeals());
+		footprint.put("historyLengthHistogram", userFootprints.getHistoryLengthHistogram());
+		footprint.put("bytesPerUserHistogram", userFootprints.getBytesHistogram());
+		footprint.put("maxVisitedLocations", userFootprints.getMaxVisitedLocations());
+		footprint.put("maxTotalBytes", userFootprints.getMaxTotalBytes());
+		footprint.put("historyLimit", userFootprints.getHistoryLimit());
+		footprint.put("trimmedLocations", userFootprints.getTrimmedLocations());
+		return footprint;
+	}
+
+	/**
+	 * @param userName The user
+	 * @return The estimate of the user, re-estimated first, or nothing for an unknown user
+	 */
+	@ReadOperation
+	public Map<String, Object> user(@Selector String userName) {
+		User user = tourGuideService.getUser(userName);
+		if (user == null) {
+			return null;
+		}
+		Footprint userFootprint = tourGuideService.getUserFootprints().account(user);
+		Map<String, Object> footprint = new LinkedHashMap<>();
+		footprint.put("userName", userName);
+		footprint.put("estimatedBytes", userFootprint.bytes());
+		footprint.put("visitedLocations", userFootprint.visitedLocations());
+		footprint.put("userRewards", userFootprint.userRewards());
+		footprint.put("trimmedRewardLocations", userFootprint.trimmedRewardLocations());
+		footprint.put("tripDeals", userFootprint.tripDeals());
+		return footprint;
+	}
+}
@@ -0,0 +1,24 @@
+package com.openclassrooms.tourguide.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A rewards calculation, for a single user or for a batch of users.
+ */
+@Name("tourguide.RewardsCalculated")
+@Label("Rewards Calculated")
+@Category({"TourGuide", "Rewards"})
+public class RewardsCalculatedEvent extends Event {
+
+	@Label("User Name")
+	public String userName;
+
+	@Label("Users")
+	public int users;
+
+	@Label("Matches")
+	public int matches;
+}
@@ -0,0 +1,21 @@
+package com.openclassrooms.tourguide.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A batch of due users tracked by the tracker.
+ */
+@Name("tourguide.TrackerBatch")
+@Label("Tracker Batch")
+@Category({"TourGuide", "Tracking"})
+public class TrackerBatchEvent extends Event {
+
+	@Label("Users")
+	public int users;
+
+	@Label("Scheduled Users")
+	public int scheduledUsers;
+}
@@ -0,0 +1,24 @@
+package com.openclassrooms.tourguide.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The tracking of a user, from the location request to the end of their rewards calculation.
+ */
+@Name("tourguide.UserTracked")
+@Label("User Tracked")
+@Category({"TourGuide", "Tracking"})
+public class UserTrackedEvent extends Event {
+
+	@Label("User Name")
+	public String userName;
+
+	@Label("Latitude")
+	public double latitude;
+
+	@Label("Longitude")
+	public double longitude;
+}
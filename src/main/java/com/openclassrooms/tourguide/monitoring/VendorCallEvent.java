@@ -0,0 +1,27 @@
+package com.openclassrooms.tourguide.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A call to gpsUtil or RewardCentral, lasting from the call to its result.
+ */
+@Name("tourguide.VendorCall")
+@Label("Vendor Call")
+@Category({"TourGuide", "Vendors"})
+@Description("A call to an external vendor, possibly hedged")
+public class VendorCallEvent extends Event {
+
+	@Label("Vendor Call")
+	public String call;
+
+	@Label("Hedged")
+	@Description("Whether a duplicate call was issued")
+	public boolean hedged;
+
+	@Label("Hedge Won")
+	public boolean hedgeWon;
+}
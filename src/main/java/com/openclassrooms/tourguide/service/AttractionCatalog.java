@@ -0,0 +1,83 @@
+package com.openclassrooms.tourguide.service;
+
+import gpsUtil.location.Attraction;
+
+import java.util.List;
+
+/**
+ * Immutable snapshot of the attractions, with a version that changes whenever the catalog is reloaded.
+ * Anything derived from the attractions can be keyed on the version to know when it is outdated.
+ * <p>
+ * Coordinates are also kept as primitive arrays, sines and cosines of the latitudes precomputed,
+ * so that distances to every attraction can be evaluated in bulk by a {@link DistanceKernel}.
+ */
+public class AttractionCatalog {
+	private final long version;
+	private final List<Attraction> attractions;
+	private final double[] sinLatitudes;
+	private final double[] cosLatitudes;
+	private final double[] longitudes;
+	private volatile AttractionGrid grid;
+
+	public AttractionCatalog(long version, List<Attraction> attractions) {
+		this.version = version;
+		this.attractions = List.copyOf(attractions);
+
+		int size = this.attractions.size();
+		this.sinLatitudes = new double[size];
+		this.cosLatitudes = new double[size];
+		this.longitudes = new double[size];
+		for (int i = 0; i < size; i++) {
+			Attraction attraction = this.attractions.get(i);
+			double latitude = Math.toRadians(attraction.latitude);
+			sinLatitudes[i] = Math.sin(latitude);
+			cosLatitudes[i] = Math.cos(latitude);
+			longitudes[i] = Math.toRadians(attraction.longitude);
+		}
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public List<Attraction> getAttractions() {
+		return attractions;
+	}
+
+	public int size() {
+		return attractions.size();
+	}
+
+	/**
+	 * @return The grid of the attractions, built on first use.
+	 */
+	public AttractionGrid getGrid() {
+		AttractionGrid attractionGrid = grid;
+		if (attractionGrid == null) {
+			attractionGrid = new AttractionGrid(this);
+			grid = attractionGrid;
+		}
+		return attractionGrid;
+	}
+
+	/**
+	 * @return The sines of the latitudes, indexed like the attractions. Must not be modified.
+	 */
+	double[] getSinLatitudes() {
+		return sinLatitudes;
+	}
+
+	/**
+	 * @return The cosines of the latitudes, indexed like the attractions. Must not be modified.
+	 */
+	double[] getCosLatitudes() {
+		return cosLatitudes;
+	}
+
+	/**
+	 * @return The longitudes in radians, indexed like the attractions. Must not be modified.
+	 */
+	double[] getLongitudes() {
+		return longitudes;
+	}
+}
@@ -0,0 +1,182 @@
+package com.openclassrooms.tourguide.service;
+
+import gpsUtil.location.Attraction;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts the rewards granted for each attraction of a catalog, in total and over the last minutes,
+ * so that the hot attractions can be listed without going through the rewards of every user.
+ * Visits are not counted: the reward matching skips the attractions a user was already rewarded for,
+ * counting their visits would bring those distance computations back on the tracking path.
+ * <p>
+ * Counters are {@link LongAdder}s indexed like the attractions of the catalog, so concurrent grants do not contend.
+ * Recent grants are counted in a ring of buckets, a bucket being cleared by the first grant that reuses it.
+ * Grants racing with that clear may be lost, which only affects the recent rates, never the totals.
+ */
+public class AttractionCounters {
+	public static final int MAX_WINDOW_MINUTES = 15;
+	private static final long BUCKET_MILLIS = TimeUnit.SECONDS.toMillis(10);
+	private static final int BUCKETS_PER_MINUTE = (int) (TimeUnit.MINUTES.toMillis(1) / BUCKET_MILLIS);
+	// One more bucket than the longest window, so the bucket being cleared is never one being read
+	private static final int BUCKETS = MAX_WINDOW_MINUTES * BUCKETS_PER_MINUTE + 1;
+
+	private final AttractionCatalog catalog;
+	private final LongSupplier clock;
+	private final LongAdder[] rewards;
+	private final LongAdder[] rewardPoints;
+	private final Bucket[] buckets = new Bucket[BUCKETS];
+
+	/**
+	 * @param catalog  The attractions to count
+	 * @param previous The counters of the previous catalog, whose totals are carried over by attraction name, or null
+	 */
+	public AttractionCounters(AttractionCatalog catalog, AttractionCounters previous) {
+		this(catalog, previous, System::currentTimeMillis);
+	}
+
+	/**
+	 * @param catalog  The attractions to count
+	 * @param previous The counters of the previous catalog, or null
+	 * @param clock    The current time in milliseconds
+	 */
+	public AttractionCounters(AttractionCatalog catalog, AttractionCounters previous, LongSupplier clock) {
+		this.catalog = catalog;
+		this.clock = clock;
+		this.rewards = newAdders(catalog.size());
+		this.rewardPoints = newAdders(catalog.size());
+		for (int b = 0; b < BUCKETS; b++) {
+			buckets[b] = new Bucket(catalog.size());
+		}
+		if (previous != null) {
+			carryOver(previous);
+		}
+	}
+
+	/**
+	 * Counts a reward granted for an attraction
+	 *
+	 * @param catalogVersion  The version of the catalog the attraction was matched in
+	 * @param attractionIndex The index of the attraction in that catalog
+	 * @param points          The points of the reward
+	 */
+	public void record(long catalogVersion, int attractionIndex, int points) {
+		if (catalogVersion != catalog.getVersion()) {
+			// Matched just before the catalog was refreshed, the index may no longer point to the same attraction
+			return;
+		}
+		rewards[attractionIndex].increment();
+		rewardPoints[attractionIndex].add(points);
+		currentBucket(clock.getAsLong() / BUCKET_MILLIS).rewards[attractionIndex].increment();
+	}
+
+	/**
+	 * Lists the attractions with the most rewards granted over the last minutes, then with the most rewards overall
+	 *
+	 * @param windowMinutes The window, from 1 to {@link #MAX_WINDOW_MINUTES} minutes
+	 * @param limit         The maximum number of attractions
+	 * @return The hottest attractions first
+	 */
+	public List<HotAttraction> getHotAttractions(int windowMinutes, int limit) {
+		if (windowMinutes < 1 || windowMinutes > MAX_WINDOW_MINUTES) {
+			throw new IllegalArgumentException("The window must be between 1 and " + MAX_WINDOW_MINUTES + " minutes");
+		}
+		long currentEpoch = clock.getAsLong() / BUCKET_MILLIS;
+		long oldestEpoch = currentEpoch - (long) windowMinutes * BUCKETS_PER_MINUTE + 1;
+		long[] windowRewards = new long[catalog.size()];
+		for (Bucket bucket : buckets) {
+			long epoch = bucket.epoch.get();
+			if (epoch >= oldestEpoch && epoch <= currentEpoch) {
+				for (int i = 0; i < windowRewards.length; i++) {
+					windowRewards[i] += bucket.rewards[i].sum();
+				}
+			}
+		}
+
+		List<HotAttraction> hotAttractions = new ArrayList<>(catalog.size());
+		for (int i = 0; i < catalog.size(); i++) {
+			hotAttractions.add(new HotAttraction(catalog.getAttractions().get(i), rewards[i].sum(), rewardPoints[i].sum(),
+					windowRewards[i], (double) windowRewards[i] / windowMinutes));
+		}
+		return hotAttractions.stream()
+				.sorted(Comparator.comparingLong(HotAttraction::windowRewards)
+						.thenComparingLong(HotAttraction::totalRewards)
+						.reversed())
+				.limit(limit)
+				.toList();
+	}
+
+	public long getRewards(int attractionIndex) {
+		return rewards[attractionIndex].sum();
+	}
+
+	public long getRewardPoints(int attractionIndex) {
+		return rewardPoints[attractionIndex].sum();
+	}
+
+	public AttractionCatalog getCatalog() {
+		return catalog;
+	}
+
+	private Bucket currentBucket(long epoch) {
+		Bucket bucket = buckets[(int) (epoch % BUCKETS)];
+		long bucketEpoch = bucket.epoch.get();
+		if (bucketEpoch < epoch && bucket.epoch.compareAndSet(bucketEpoch, epoch)) {
+			for (LongAdder adder : bucket.rewards) {
+				adder.reset();
+			}
+		}
+		return bucket;
+	}
+
+	private void carryOver(AttractionCounters previous) {
+		List<Attraction> previousAttractions = previous.catalog.getAttractions();
+		for (int p = 0; p < previousAttractions.size(); p++) {
+			String attractionName = previousAttractions.get(p).attractionName;
+			for (int i = 0; i < catalog.size(); i++) {
+				if (catalog.getAttractions().get(i).attractionName.equals(attractionName)) {
+					rewards[i].add(previous.rewards[p].sum());
+					rewardPoints[i].add(previous.rewardPoints[p].sum());
+					break;
+				}
+			}
+		}
+	}
+
+	private static LongAdder[] newAdders(int size) {
+		LongAdder[] adders = new LongAdder[size];
+		for (int i = 0; i < size; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	/**
+	 * The rewards granted per attraction during one {@link #BUCKET_MILLIS} period, identified by its epoch
+	 */
+	private static class Bucket {
+		private final AtomicLong epoch = new AtomicLong(-1);
+		private final LongAdder[] rewards;
+
+		private Bucket(int size) {
+			this.rewards = newAdders(size);
+		}
+	}
+
+	/**
+	 * @param attraction        The attraction
+	 * @param totalRewards      The rewards granted since startup
+	 * @param totalRewardPoints The points of those rewards
+	 * @param windowRewards     The rewards granted over the window
+	 * @param rewardsPerMinute  The rewards granted per minute over the window
+	 */
+	public record HotAttraction(Attraction attraction, long totalRewards, long totalRewardPoints,
+								long windowRewards, double rewardsPerMinute) {
+	}
+}
@@ -0,0 +1,105 @@
+package com.openclassrooms.tourguide.service;
+
+import gpsUtil.location.Attraction;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Attractions of a catalog bucketed in a grid of {@value #CELL_DEGREES} degree cells, so that the attractions
+ * near a location are found by looking at the neighbouring cells only.
+ * <p>
+ * Small catalogs are not bucketed at all: evaluating every attraction with the distance kernel
+ * is cheaper than looking cells up.
+ */
+public class AttractionGrid {
+	private static final double CELL_DEGREES = 1.0;
+	private static final int MIN_BUCKETED_ATTRACTIONS = 256;
+	private static final double MILES_PER_DEGREE_OF_LATITUDE = 69.0;
+	private static final int[] EMPTY = new int[0];
+
+	private final int size;
+	private final Map<Long, int[]> cells = new HashMap<>();
+
+	public AttractionGrid(AttractionCatalog catalog) {
+		this.size = catalog.size();
+		if (size < MIN_BUCKETED_ATTRACTIONS) {
+			return;
+		}
+		for (int i = 0; i < size; i++) {
+			Attraction attraction = catalog.getAttractions().get(i);
+			long cell = cellKey(latitudeCell(attraction.latitude), longitudeCell(attraction.longitude));
+			int[] indices = cells.getOrDefault(cell, EMPTY);
+			int[] updated = Arrays.copyOf(indices, indices.length + 1);
+			updated[indices.length] = i;
+			cells.put(cell, updated);
+		}
+	}
+
+	/**
+	 * Returns the indices, in the catalog, of the attractions lying in the cells that overlap a circle.
+	 * Every attraction within the circle is among them, some further away may be too.
+	 *
+	 * @param latitude  The latitude of the centre of the circle.
+	 * @param longitude The longitude of the centre of the circle.
+	 * @param radius    The radius of the circle, in miles.
+	 * @return The candidate indices, or null when the whole catalog should be evaluated instead.
+	 */
+	public int[] candidates(double latitude, double longitude, double radius) {
+		if (cells.isEmpty()) {
+			return null;
+		}
+		double latitudeSpan = radius / MILES_PER_DEGREE_OF_LATITUDE;
+		double minLatitude = latitude - latitudeSpan;
+		double maxLatitude = latitude + latitudeSpan;
+		if (minLatitude <= -90 || maxLatitude >= 90) {
+			return null;
+		}
+		double longitudeSpan = latitudeSpan / Math.cos(Math.toRadians(Math.max(Math.abs(minLatitude), Math.abs(maxLatitude))));
+		if (longitudeSpan >= 180) {
+			return null;
+		}
+
+		int minLatitudeCell = latitudeCell(minLatitude);
+		int maxLatitudeCell = latitudeCell(maxLatitude);
+		int minLongitudeCell = longitudeCell(longitude - longitudeSpan);
+		int longitudeCells = Math.min(longitudeCellCount(), (int) Math.ceil(2 * longitudeSpan / CELL_DEGREES) + 1);
+		if ((long) (maxLatitudeCell - minLatitudeCell + 1) * longitudeCells > size) {
+			return null;
+		}
+
+		int[] candidates = EMPTY;
+		int count = 0;
+		for (int latitudeCell = minLatitudeCell; latitudeCell <= maxLatitudeCell; latitudeCell++) {
+			for (int i = 0; i < longitudeCells; i++) {
+				int[] indices = cells.get(cellKey(latitudeCell, (minLongitudeCell + i) % longitudeCellCount()));
+				if (indices != null) {
+					if (count + indices.length > candidates.length) {
+						candidates = Arrays.copyOf(candidates, Math.max(2 * candidates.length, count + indices.length));
+					}
+					System.arraycopy(indices, 0, candidates, count, indices.length);
+					count += indices.length;
+				}
+			}
+		}
+		return Arrays.copyOf(candidates, count);
+	}
+
+	private static int longitudeCellCount() {
+		return (int) Math.ceil(360 / CELL_DEGREES);
+	}
+
+	private static long cellKey(int latitudeCell, int longitudeCell) {
+		return ((long) latitudeCell << 32) | longitudeCell;
+	}
+
+	private static int latitudeCell(double latitude) {
+		return (int) Math.floor((latitude + 90) / CELL_DEGREES);
+	}
+
+	private static int longitudeCell(double longitude) {
+		int cell = (int) Math.floor((longitude + 180) / CELL_DEGREES) % longitudeCellCount();
+		return cell < 0 ? cell + longitudeCellCount() : cell;
+	}
+}
@@ -0,0 +1,39 @@
+package com.openclassrooms.tourguide.service;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Evaluates the distances between one location and every attraction of a catalog at once.
+ */
+public interface DistanceKernel {
+
+	double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+
+	/**
+	 * @param latitude  The latitude of the location, in degrees.
+	 * @param longitude The longitude of the location, in degrees.
+	 * @param catalog   The attractions.
+	 * @param distances Receives the distance in statute miles to each attraction, indexed like the catalog.
+	 *                  Must hold at least as many elements as the catalog.
+	 */
+	void distances(double latitude, double longitude, AttractionCatalog catalog, double[] distances);
+
+	/**
+	 * Returns the vectorised kernel when the {@code jdk.incubator.vector} module is available
+	 * (run with {@code --add-modules jdk.incubator.vector}), the scalar kernel otherwise.
+	 *
+	 * @return The fastest kernel available on this runtime.
+	 */
+	static DistanceKernel best() {
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+			try {
+				return (DistanceKernel) Class.forName("com.openclassrooms.tourguide.service.VectorDistanceKernel")
+						.getDeclaredConstructor()
+						.newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				LoggerFactory.getLogger(DistanceKernel.class).warn("Vector distance kernel unavailable, using scalar kernel", e);
+			}
+		}
+		return new ScalarDistanceKernel();
+	}
+}
@@ -0,0 +1,49 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Formats supported by the user export.
+ */
+public enum ExportFormat {
+	/**
+	 * One JSON object per user and per line.
+	 */
+	NDJSON("application/x-ndjson", "ndjson"),
+	/**
+	 * One row per visited location or reward, with a header line.
+	 */
+	CSV("text/csv", "csv");
+
+	private final String contentType;
+	private final String fileExtension;
+
+	ExportFormat(String contentType, String fileExtension) {
+		this.contentType = contentType;
+		this.fileExtension = fileExtension;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public String getFileExtension() {
+		return fileExtension;
+	}
+
+	/**
+	 * @param format The format name, case-insensitive.
+	 * @return The matching format.
+	 * @throws IllegalArgumentException If the format is not supported.
+	 */
+	public static ExportFormat fromName(String format) {
+		for (ExportFormat exportFormat : values()) {
+			if (exportFormat.name().equalsIgnoreCase(format)) {
+				return exportFormat;
+			}
+		}
+		throw new IllegalArgumentException("Unknown export format " + format + ", expected one of "
+				+ Arrays.toString(values()).toLowerCase(Locale.ROOT));
+	}
+}
@@ -0,0 +1,122 @@
+package com.openclassrooms.tourguide.service;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import gpsUtil.location.Location;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps, for each user, a geofence around the last location that was fully evaluated against the attractions.
+ * <p>
+ * After a full evaluation the geofence records the distance between that location and the reward radius
+ * of the nearest attraction the user has not been rewarded for yet. By the triangle inequality, any later
+ * location closer to the anchor than that distance cannot be within the reward radius of any of those
+ * attractions, so it can be skipped with a single distance computation instead of a scan of the catalog.
+ * Rewards granted afterwards only shrink the set of candidate attractions, which keeps the geofence conservative.
+ */
+public class GeofenceEngine {
+
+	private final Map<UUID, Geofence> geofences = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the geofence of a user, or a fresh one if the recorded geofence no longer matches the
+	 * user's history or was computed with a different proximity buffer.
+	 *
+	 * @param user            The user.
+	 * @param proximityBuffer The reward radius currently in use, in miles.
+	 * @return The geofence of the user.
+	 */
+	public Geofence getGeofence(User user, int proximityBuffer) {
+		int visitedLocations = user.getVisitedLocations().size();
+		return geofences.compute(user.getUserId(), (id, geofence) ->
+				geofence == null
+						|| geofence.proximityBuffer != proximityBuffer
+						|| geofence.evaluatedLocations > visitedLocations
+						? new Geofence(proximityBuffer)
+						: geofence
+		);
+	}
+
+	/**
+	 * Forgets the geofence of a user, forcing a full evaluation of their history on the next calculation.
+	 *
+	 * @param user The user.
+	 */
+	public void invalidate(User user) {
+		geofences.remove(user.getUserId());
+	}
+
+	/**
+	 * Forgets every geofence, for instance after the attraction catalog changed.
+	 */
+	public void invalidateAll() {
+		geofences.clear();
+	}
+
+	/**
+	 * Geofence of a single user. Only updated while calculating the rewards of that user.
+	 */
+	public static class Geofence {
+		private final int proximityBuffer;
+		private int evaluatedLocations;
+		private Location anchor;
+		private double radius;
+
+		Geofence(int proximityBuffer) {
+			this.proximityBuffer = proximityBuffer;
+		}
+
+		/**
+		 * @return The number of visited locations of the user already accounted for.
+		 */
+		public int getEvaluatedLocations() {
+			return evaluatedLocations;
+		}
+
+		/**
+		 * @param distanceFromAnchor The distance between the anchor and the location to test, in miles.
+		 * @return Whether the location is proven out of reach of every unrewarded attraction.
+		 */
+		public boolean contains(double distanceFromAnchor) {
+			return distanceFromAnchor < radius;
+		}
+
+		public Location getAnchor() {
+			return anchor;
+		}
+
+		public double getRadius() {
+			return radius;
+		}
+
+		/**
+		 * Marks the next visited location as accounted for without a full evaluation.
+		 */
+		public void skip() {
+			evaluatedLocations++;
+		}
+
+		/**
+		 * Accounts for the oldest visited locations of the user having been removed from their history.
+		 *
+		 * @param removedLocations The number of locations removed, all of them already accounted for.
+		 */
+		public void forget(int removedLocations) {
+			evaluatedLocations -= removedLocations;
+		}
+
+		/**
+		 * Re-centres the geofence on a location that has just been evaluated against every unrewarded attraction.
+		 *
+		 * @param location                  The evaluated location.
+		 * @param nearestUnrewardedDistance The distance to the nearest attraction still to be rewarded, in miles.
+		 */
+		public void anchor(Location location, double nearestUnrewardedDistance) {
+			this.anchor = location;
+			this.radius = nearestUnrewardedDistance - proximityBuffer;
+			evaluatedLocations++;
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package com.openclassrooms.tourguide.service;
+
+import com.openclassrooms.tourguide.monitoring.VendorCallEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hedges the calls to a slow vendor to cut tail latency.
+ * <p>
+ * When hedging is enabled, the call runs on a thread of this hedger while the caller waits for its result, and once
+ * it has taken longer than the p95 latency observed so far, a duplicate call is issued on a small bounded pool.
+ * The first call to complete successfully settles the result, and the other one is cancelled to cut it short;
+ * the vendors end their simulated latency on interrupt. Only the threads of this hedger are ever interrupted,
+ * never the caller. Hedges are paid for by a budget credited for every call, which caps the extra load on the
+ * vendor at the given ratio, and are skipped when the pool is busy. When hedging is disabled, calls run on the
+ * caller thread and only feed the latency statistics.
+ * Every call is recorded as a {@link VendorCallEvent} when a flight recording is on.
+ */
+public class Hedger {
+	private static final Logger logger = LoggerFactory.getLogger(Hedger.class);
+	// At most 5% of extra load on the vendors
+	public static final double DEFAULT_BUDGET_RATIO = 0.05;
+	private static final int LATENCY_SAMPLES = 1024;
+	private static final int MIN_SAMPLES = 100;
+	private static final int PERCENTILE_REFRESH_EVERY = 64;
+	private static final long MAX_BUDGET_CREDITS = 100;
+	private static final int MAX_CONCURRENT_HEDGES = 16;
+
+	private final String name;
+	private final double budgetRatio;
+	// As many threads as callers waiting, the callers being blocked either way
+	private final ThreadPoolExecutor callExecutor;
+	private final ThreadPoolExecutor hedgeExecutor;
+	private final ScheduledThreadPoolExecutor hedgeTimer;
+	private volatile boolean enabled;
+
+	private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_SAMPLES);
+	private final AtomicInteger samples = new AtomicInteger();
+	private volatile long p95Nanos = Long.MAX_VALUE;
+
+	// Budget in millionths of a hedge, credited on every call
+	private final AtomicLong budget = new AtomicLong();
+	private final AtomicLong calls = new AtomicLong();
+	private final AtomicLong hedges = new AtomicLong();
+	private final AtomicLong hedgeWins = new AtomicLong();
+
+	/**
+	 * @param name        The name of the hedged call, used in logs and metrics.
+	 * @param budgetRatio The maximum ratio of hedges to calls, for instance 0.05 for 5% of extra load.
+	 */
+	public Hedger(String name, double budgetRatio) {
+		this.name = name;
+		this.budgetRatio = budgetRatio;
+		this.callExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 1, TimeUnit.MINUTES,
+				new SynchronousQueue<>(), daemonThreads("hedger-call-" + name));
+		this.hedgeExecutor = new ThreadPoolExecutor(0, MAX_CONCURRENT_HEDGES, 1, TimeUnit.MINUTES,
+				new SynchronousQueue<>(), daemonThreads("hedger-" + name));
+		this.hedgeTimer = new ScheduledThreadPoolExecutor(1, daemonThreads("hedger-timer-" + name));
+		// Most calls complete before their hedge is due, do not keep their cancelled timers around
+		hedgeTimer.setRemoveOnCancelPolicy(true);
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getCalls() {
+		return calls.get();
+	}
+
+	public long getHedges() {
+		return hedges.get();
+	}
+
+	public long getHedgeWins() {
+		return hedgeWins.get();
+	}
+
+	/**
+	 * @return The p95 latency of the calls in milliseconds, or -1 until enough calls were observed.
+	 */
+	public long getP95Millis() {
+		long p95 = p95Nanos;
+		return p95 == Long.MAX_VALUE ? -1 : TimeUnit.NANOSECONDS.toMillis(p95);
+	}
+
+	/**
+	 * Runs a vendor call, hedging it if enabled.
+	 *
+	 * @param call The vendor call.
+	 * @param <T>  The result type.
+	 * @return The result of the first call to complete successfully.
+	 */
+	public <T> T call(Callable<T> call) {
+		calls.incrementAndGet();
+		budget.updateAndGet(credits -> Math.min(MAX_BUDGET_CREDITS * 1_000_000, credits + (long) (budgetRatio * 1_000_000)));
+		VendorCallEvent event = new VendorCallEvent();
+		event.begin();
+		long start = System.nanoTime();
+		try {
+			T result = enabled ? callHedged(call, event) : callDirectly(call);
+			recordLatency(System.nanoTime() - start);
+			return result;
+		} finally {
+			event.end();
+			if (event.shouldCommit()) {
+				event.call = name;
+				event.commit();
+			}
+		}
+	}
+
+	private <T> T callHedged(Callable<T> call, VendorCallEvent event) {
+		HedgedCall<T> hedgedCall = new HedgedCall<>(call);
+		try {
+			hedgedCall.primary = callExecutor.submit(() -> hedgedCall.run(false));
+		} catch (RejectedExecutionException e) {
+			return callDirectly(call);
+		}
+		long p95 = p95Nanos;
+		ScheduledFuture<?> trigger = p95 == Long.MAX_VALUE ? null
+				: hedgeTimer.schedule(hedgedCall::fireHedge, p95, TimeUnit.NANOSECONDS);
+		try {
+			T result = hedgedCall.result.get();
+			if (hedgedCall.hedgeWon) {
+				hedgeWins.incrementAndGet();
+				event.hedgeWon = true;
+			}
+			return result;
+		} catch (ExecutionException e) {
+			throw failure(e.getCause() instanceof Exception cause ? cause : e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for " + name, e);
+		} finally {
+			if (trigger != null) {
+				trigger.cancel(false);
+			}
+			event.hedged = hedgedCall.hedge != null;
+			hedgedCall.cancel();
+		}
+	}
+
+	private <T> T callDirectly(Callable<T> call) {
+		try {
+			return call.call();
+		} catch (Exception e) {
+			throw failure(e);
+		}
+	}
+
+	private RuntimeException failure(Exception e) {
+		return e instanceof RuntimeException runtimeException ? runtimeException
+				: new IllegalStateException("Call to " + name + " failed", e);
+	}
+
+	private boolean tryConsumeBudget() {
+		long credits;
+		do {
+			credits = budget.get();
+			if (credits < 1_000_000) {
+				return false;
+			}
+		} while (!budget.compareAndSet(credits, credits - 1_000_000));
+		return true;
+	}
+
+	/**
+	 * Records a latency in a ring of recent samples, and refreshes the p95 every few samples.
+	 * The snapshot is not taken atomically, so samples written meanwhile may or may not be included,
+	 * which is good enough for a percentile over the last thousand calls.
+	 * Slow calls beaten by a hedge are recorded with the time the caller waited, a lower bound of their latency.
+	 */
+	private void recordLatency(long nanos) {
+		int sample = samples.getAndIncrement();
+		latencies.set(Math.floorMod(sample, LATENCY_SAMPLES), nanos);
+		if (sample + 1 >= MIN_SAMPLES && (sample + 1) % PERCENTILE_REFRESH_EVERY == 0) {
+			long[] snapshot = new long[Math.min(sample + 1, LATENCY_SAMPLES)];
+			for (int i = 0; i < snapshot.length; i++) {
+				snapshot[i] = latencies.get(i);
+			}
+			Arrays.sort(snapshot);
+			p95Nanos = snapshot[(int) (snapshot.length * 0.95)];
+		}
+	}
+
+	private static ThreadFactory daemonThreads(String name) {
+		return runnable -> {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * A call running on a thread of this hedger, and its hedge if one was issued.
+	 * The first attempt to succeed completes the result. The result fails only once every attempt has failed,
+	 * with the failure of the primary call, and no hedge is issued after that.
+	 */
+	private class HedgedCall<T> {
+		private final Callable<T> call;
+		private final CompletableFuture<T> result = new CompletableFuture<>();
+		// Attempts still running, 0 once they all failed
+		private final AtomicInteger runningAttempts = new AtomicInteger(1);
+		private volatile Exception primaryFailure;
+		private volatile Future<?> primary;
+		private volatile Future<?> hedge;
+		private final AtomicBoolean settled = new AtomicBoolean();
+		private volatile boolean hedgeWon;
+
+		private HedgedCall(Callable<T> call) {
+			this.call = call;
+		}
+
+		/**
+		 * Issues the hedge, on the timer thread, if the call is still running and the budget and the pool allow it.
+		 */
+		private void fireHedge() {
+			if (result.isDone() || !tryConsumeBudget()) {
+				return;
+			}
+			if (runningAttempts.getAndUpdate(attempts -> attempts == 0 ? 0 : attempts + 1) == 0) {
+				budget.addAndGet(1_000_000);
+				return;
+			}
+			try {
+				hedge = hedgeExecutor.submit(() -> run(true));
+				hedges.incrementAndGet();
+			} catch (RejectedExecutionException e) {
+				// Every hedge thread is busy, give the hedge back
+				budget.addAndGet(1_000_000);
+				attemptFailed(null);
+			}
+		}
+
+		private void run(boolean isHedge) {
+			T value;
+			try {
+				value = call.call();
+			} catch (Exception e) {
+				if (isHedge) {
+					logger.debug("Hedged {} call failed, waiting for the first one", name, e);
+				} else {
+					primaryFailure = e;
+				}
+				attemptFailed(e);
+				return;
+			}
+			if (settled.compareAndSet(false, true)) {
+				hedgeWon = isHedge;
+				result.complete(value);
+			}
+		}
+
+		private void attemptFailed(Exception e) {
+			if (runningAttempts.decrementAndGet() == 0) {
+				Exception failure = primaryFailure != null ? primaryFailure : e;
+				result.completeExceptionally(failure != null ? failure : new CancellationException());
+			}
+		}
+
+		/**
+		 * Cancels the attempts still running once the result is settled, interrupting the threads of this hedger.
+		 */
+		private void cancel() {
+			if (primary != null) {
+				primary.cancel(true);
+			}
+			if (hedge != null) {
+				hedge.cancel(true);
+			}
+		}
+	}
+}
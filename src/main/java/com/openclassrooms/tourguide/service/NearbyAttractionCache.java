@@ -0,0 +1,92 @@
+package com.openclassrooms.tourguide.service;
+
+import com.openclassrooms.tourguide.helper.Geohash;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches, per geohash cell and catalog version, the attractions that can be among the nearest ones
+ * of any location inside the cell.
+ * <p>
+ * For a cell of centre c and radius r, and a location u inside it, every attraction is between
+ * d(c, a) - r and d(c, a) + r away from u. The n nearest attractions of u are therefore all within
+ * d<sub>n</sub>(c) + 2r of the centre, where d<sub>n</sub>(c) is the distance from the centre to its
+ * n-th nearest attraction. Only those candidates need to be ranked per user, however large the catalog is.
+ */
+public class NearbyAttractionCache {
+	// 5 characters give cells of about 5 x 5 km
+	private static final int GEOHASH_PRECISION = 5;
+	private static final int MAX_CELLS = 100_000;
+	// Absorbs the rounding errors of the distance formula
+	private static final double DISTANCE_MARGIN = 0.01;
+
+	private final RewardsService rewardsService;
+	private final int rankedAttractions;
+	private final Map<CellKey, AttractionCatalog> candidatesByCell = new ConcurrentHashMap<>();
+
+	/**
+	 * @param rewardsService    The rewards service providing the catalog and the distances.
+	 * @param rankedAttractions The number of nearest attractions the candidates must cover.
+	 */
+	public NearbyAttractionCache(RewardsService rewardsService, int rankedAttractions) {
+		this.rewardsService = rewardsService;
+		this.rankedAttractions = rankedAttractions;
+	}
+
+	/**
+	 * @param location The location.
+	 * @return The attractions that can be among the nearest ones of the location, as a catalog
+	 * sharing the version of the full catalog.
+	 */
+	public AttractionCatalog getCandidates(Location location) {
+		AttractionCatalog catalog = rewardsService.getAttractionCatalog();
+		CellKey key = new CellKey(Geohash.encode(location.latitude, location.longitude, GEOHASH_PRECISION), catalog.getVersion());
+
+		AttractionCatalog candidates = candidatesByCell.get(key);
+		if (candidates == null) {
+			if (candidatesByCell.size() >= MAX_CELLS) {
+				candidatesByCell.clear();
+			}
+			candidates = candidatesByCell.computeIfAbsent(key, k -> computeCandidates(k.geohash(), catalog));
+		}
+		return candidates;
+	}
+
+	private AttractionCatalog computeCandidates(String geohash, AttractionCatalog catalog) {
+		if (catalog.size() <= rankedAttractions) {
+			return catalog;
+		}
+
+		double[] bounds = Geohash.bounds(geohash);
+		Location centre = new Location((bounds[0] + bounds[2]) / 2, (bounds[1] + bounds[3]) / 2);
+		double radius = 0;
+		for (Location corner : List.of(
+				new Location(bounds[0], bounds[1]), new Location(bounds[0], bounds[3]),
+				new Location(bounds[2], bounds[1]), new Location(bounds[2], bounds[3]))) {
+			radius = Math.max(radius, rewardsService.getDistance(centre, corner));
+		}
+
+		double[] distances = rewardsService.getDistances(catalog, centre);
+		double[] sorted = distances.clone();
+		Arrays.sort(sorted);
+		double maxDistance = sorted[rankedAttractions - 1] + 2 * radius + DISTANCE_MARGIN;
+
+		List<Attraction> candidates = new ArrayList<>();
+		for (int i = 0; i < distances.length; i++) {
+			// Written so that a NaN distance keeps the attraction
+			if (!(distances[i] > maxDistance)) {
+				candidates.add(catalog.getAttractions().get(i));
+			}
+		}
+		return new AttractionCatalog(catalog.getVersion(), candidates);
+	}
+
+	private record CellKey(String geohash, long catalogVersion) {
+	}
+}
@@ -0,0 +1,205 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.Date;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A bulk recalculation of the users' rewards, processed in chunks of users ordered by user name.
+ * <p>
+ * The job records the last user name it processed, its cursor, so that it can be paused,
+ * resumed, and restored from a checkpoint after a restart.
+ * It is throttled on its RewardCentral calls, the load it puts on the vendor, rather than on its users.
+ * The throttle keeps the average rate of calls since the job started under its calls per second:
+ * the calls of a chunk are sent in parallel, then the job waits until the average is back under the cap,
+ * so the vendor sees bursts of at most a chunk's calls.
+ */
+public class RewardRecalculationJob {
+
+	public enum Status {
+		RUNNING, PAUSED, CANCELLED, COMPLETED, FAILED;
+
+		public boolean isTerminal() {
+			return this == CANCELLED || this == COMPLETED || this == FAILED;
+		}
+	}
+
+	private final String id;
+	private final Date createdAt;
+	private final int chunkSize;
+	private final int callsPerSecond;
+	private final AtomicReference<Status> status;
+	private final AtomicBoolean workerActive = new AtomicBoolean();
+	private volatile String cursor;
+	private volatile long processedUsers;
+	private volatile long rewardCalls;
+	private volatile long totalUsers;
+	// Time spent running, paused time excluded, and the users processed and calls made during that time
+	private volatile long runningNanos;
+	private volatile long runStartNanos;
+	private volatile long processedInRun;
+	private volatile long callsInRun;
+
+	public RewardRecalculationJob(int chunkSize, int callsPerSecond, long totalUsers) {
+		this(UUID.randomUUID().toString(), new Date(), chunkSize, callsPerSecond, totalUsers, Status.RUNNING, null, 0, 0);
+	}
+
+	private RewardRecalculationJob(String id, Date createdAt, int chunkSize, int callsPerSecond, long totalUsers,
+								   Status status, String cursor, long processedUsers, long rewardCalls) {
+		this.id = id;
+		this.createdAt = createdAt;
+		this.chunkSize = chunkSize;
+		this.callsPerSecond = callsPerSecond;
+		this.totalUsers = totalUsers;
+		this.status = new AtomicReference<>(status);
+		this.cursor = cursor;
+		this.processedUsers = processedUsers;
+		this.rewardCalls = rewardCalls;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public Date getCreatedAt() {
+		return createdAt;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public int getCallsPerSecond() {
+		return callsPerSecond;
+	}
+
+	public Status getStatus() {
+		return status.get();
+	}
+
+	public String getCursor() {
+		return cursor;
+	}
+
+	public long getProcessedUsers() {
+		return processedUsers;
+	}
+
+	public long getTotalUsers() {
+		return totalUsers;
+	}
+
+	/**
+	 * @return The matches sent to RewardCentral.
+	 */
+	public long getRewardCalls() {
+		return rewardCalls;
+	}
+
+	/**
+	 * @return Whether a worker is still processing the job, a paused or cancelled job finishing its current chunk.
+	 */
+	public boolean isActive() {
+		return workerActive.get();
+	}
+
+	/**
+	 * @return The users processed per second while running.
+	 */
+	public double getThroughput() {
+		long nanos = runningNanos + (runStartNanos == 0 ? 0 : System.nanoTime() - runStartNanos);
+		return nanos == 0 ? 0 : processedInRun / (nanos / 1e9);
+	}
+
+	/**
+	 * @return The estimated seconds before completion at the current throughput, or -1 if unknown.
+	 */
+	public long getEtaSeconds() {
+		if (getStatus().isTerminal()) {
+			return 0;
+		}
+		double throughput = getThroughput();
+		return throughput == 0 ? -1 : (long) (Math.max(0, totalUsers - processedUsers) / throughput);
+	}
+
+	boolean transition(Status from, Status to) {
+		return status.compareAndSet(from, to);
+	}
+
+	/**
+	 * Claims the right to run the job, so that a resume racing with a pause cannot start a second worker.
+	 */
+	boolean claimWorker() {
+		return workerActive.compareAndSet(false, true);
+	}
+
+	void releaseWorker() {
+		workerActive.set(false);
+	}
+
+	void startRun() {
+		runStartNanos = System.nanoTime();
+	}
+
+	void stopRun() {
+		if (runStartNanos != 0) {
+			runningNanos += System.nanoTime() - runStartNanos;
+			runStartNanos = 0;
+		}
+	}
+
+	/**
+	 * @return The nanoseconds to wait so that the job stays within its calls per second, on average.
+	 */
+	long throttleNanos() {
+		long elapsed = runningNanos + System.nanoTime() - runStartNanos;
+		long expected = TimeUnit.SECONDS.toNanos(callsInRun) / callsPerSecond;
+		return Math.max(0, expected - elapsed);
+	}
+
+	void advance(String lastUserName, int users, int calls) {
+		cursor = lastUserName;
+		processedUsers += users;
+		processedInRun += users;
+		rewardCalls += calls;
+		callsInRun += calls;
+		// Users added since the start
+		totalUsers = Math.max(totalUsers, processedUsers);
+	}
+
+	void fail() {
+		status.set(Status.FAILED);
+	}
+
+	Properties toCheckpoint() {
+		Properties checkpoint = new Properties();
+		checkpoint.setProperty("id", id);
+		checkpoint.setProperty("createdAt", Long.toString(createdAt.getTime()));
+		checkpoint.setProperty("chunkSize", Integer.toString(chunkSize));
+		checkpoint.setProperty("callsPerSecond", Integer.toString(callsPerSecond));
+		checkpoint.setProperty("totalUsers", Long.toString(totalUsers));
+		checkpoint.setProperty("status", getStatus().name());
+		checkpoint.setProperty("processedUsers", Long.toString(processedUsers));
+		checkpoint.setProperty("rewardCalls", Long.toString(rewardCalls));
+		if (cursor != null) {
+			checkpoint.setProperty("cursor", cursor);
+		}
+		return checkpoint;
+	}
+
+	static RewardRecalculationJob fromCheckpoint(Properties checkpoint) {
+		return new RewardRecalculationJob(
+				checkpoint.getProperty("id"),
+				new Date(Long.parseLong(checkpoint.getProperty("createdAt"))),
+				Integer.parseInt(checkpoint.getProperty("chunkSize")),
+				Integer.parseInt(checkpoint.getProperty("callsPerSecond")),
+				Long.parseLong(checkpoint.getProperty("totalUsers")),
+				Status.valueOf(checkpoint.getProperty("status")),
+				checkpoint.getProperty("cursor"),
+				Long.parseLong(checkpoint.getProperty("processedUsers")),
+				Long.parseLong(checkpoint.getProperty("rewardCalls", "0")));
+	}
+}
@@ -0,0 +1,230 @@
+package com.openclassrooms.tourguide.service;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.service.RewardRecalculationJob.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs bulk recalculations of the users' rewards, for instance after a proximity change.
+ * <p>
+ * A job reads the user store in chunks ordered by user name and checkpoints its cursor to a file
+ * after every chunk, so it can be paused, resumed or cancelled, and is resumed where it stopped
+ * after a restart. The geofences of a chunk's users are forgotten before it is processed, so that
+ * their whole history is matched again against the current proximity and attractions.
+ * Each job is throttled to its number of RewardCentral calls per second on average, to leave room in
+ * the RewardCentral budget for the tracker and the interactive requests. The calls of a chunk are sent
+ * at once, so a smaller chunk size gives a smoother load.
+ */
+@Service
+public class RewardRecalculationService {
+	private static final Logger logger = LoggerFactory.getLogger(RewardRecalculationService.class);
+	public static final int DEFAULT_CHUNK_SIZE = 100;
+	public static final int DEFAULT_CALLS_PER_SECOND = 100;
+	private static final int MAX_CONCURRENT_JOBS = 2;
+	private static final String CHECKPOINT_PREFIX = "reward-job-";
+	private static final String CHECKPOINT_SUFFIX = ".properties";
+
+	private final TourGuideService tourGuideService;
+	private final RewardsService rewardsService;
+	private final Path checkpointDirectory;
+	private final Map<String, RewardRecalculationJob> jobs = new ConcurrentHashMap<>();
+	private final ExecutorService executor = Executors.newFixedThreadPool(MAX_CONCURRENT_JOBS, runnable -> {
+		Thread thread = new Thread(runnable, "reward-recalculation");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public RewardRecalculationService(TourGuideService tourGuideService, RewardsService rewardsService,
+									  @Value("${tourguide.jobs.checkpoint-dir:${java.io.tmpdir}/tourguide-jobs}") String checkpointDirectory) {
+		this.tourGuideService = tourGuideService;
+		this.rewardsService = rewardsService;
+		this.checkpointDirectory = Path.of(checkpointDirectory);
+		restoreCheckpoints();
+	}
+
+	/**
+	 * Starts a recalculation of the rewards of every user.
+	 *
+	 * @param chunkSize      The number of users processed between two checkpoints.
+	 * @param callsPerSecond The maximum average number of RewardCentral calls per second.
+	 * @return The job
+	 */
+	public RewardRecalculationJob start(int chunkSize, int callsPerSecond) {
+		if (chunkSize <= 0 || callsPerSecond <= 0) {
+			throw new IllegalArgumentException("Chunk size and calls per second must be positive");
+		}
+		RewardRecalculationJob job = new RewardRecalculationJob(chunkSize, callsPerSecond, tourGuideService.getUserCount());
+		jobs.put(job.getId(), job);
+		checkpoint(job);
+		startWorker(job);
+		logger.info("Started reward recalculation job {}", job.getId());
+		return job;
+	}
+
+	public RewardRecalculationJob getJob(String jobId) {
+		return jobs.get(jobId);
+	}
+
+	public Collection<RewardRecalculationJob> getJobs() {
+		return List.copyOf(jobs.values());
+	}
+
+	/**
+	 * Pauses a running job after its current chunk.
+	 *
+	 * @return Whether the job was running.
+	 */
+	public boolean pause(RewardRecalculationJob job) {
+		if (!job.transition(Status.RUNNING, Status.PAUSED)) {
+			return false;
+		}
+		checkpoint(job);
+		return true;
+	}
+
+	/**
+	 * Resumes a paused job from its cursor.
+	 *
+	 * @return Whether the job was paused.
+	 */
+	public boolean resume(RewardRecalculationJob job) {
+		if (!job.transition(Status.PAUSED, Status.RUNNING)) {
+			return false;
+		}
+		checkpoint(job);
+		startWorker(job);
+		return true;
+	}
+
+	/**
+	 * Cancels a running or paused job, a running job stops after its current chunk.
+	 *
+	 * @return Whether the job was running or paused.
+	 */
+	public boolean cancel(RewardRecalculationJob job) {
+		if (!job.transition(Status.RUNNING, Status.CANCELLED) && !job.transition(Status.PAUSED, Status.CANCELLED)) {
+			return false;
+		}
+		checkpoint(job);
+		return true;
+	}
+
+	private void startWorker(RewardRecalculationJob job) {
+		if (job.claimWorker()) {
+			executor.execute(() -> run(job));
+		}
+	}
+
+	private void run(RewardRecalculationJob job) {
+		job.startRun();
+		try {
+			while (job.getStatus() == Status.RUNNING) {
+				List<User> users = tourGuideService.getUsersAfter(job.getCursor(), job.getChunkSize());
+				if (users.isEmpty()) {
+					if (job.transition(Status.RUNNING, Status.COMPLETED)) {
+						logger.info("Reward recalculation job {} completed, {} users at {} users/s",
+								job.getId(), job.getProcessedUsers(), Math.round(job.getThroughput()));
+					}
+					break;
+				}
+				int calls = rewardsService.recalculateMultipleUserRewards(users);
+				job.advance(users.get(users.size() - 1).getUserName(), users.size(), calls);
+				checkpoint(job);
+				TimeUnit.NANOSECONDS.sleep(job.throttleNanos());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			logger.error("Reward recalculation job {} failed at user {}", job.getId(), job.getCursor(), e);
+			job.fail();
+		} finally {
+			job.stopRun();
+			checkpoint(job);
+			job.releaseWorker();
+		}
+		// Resumed while the worker was stopping
+		if (job.getStatus() == Status.RUNNING && !Thread.currentThread().isInterrupted()) {
+			startWorker(job);
+		}
+	}
+
+	/**
+	 * Writes the state of a job to its checkpoint file, replaced atomically.
+	 * Finished jobs have their checkpoint removed.
+	 */
+	private void checkpoint(RewardRecalculationJob job) {
+		Path checkpointFile = checkpointDirectory.resolve(CHECKPOINT_PREFIX + job.getId() + CHECKPOINT_SUFFIX);
+		// Request threads and the worker may checkpoint the same job
+		synchronized (job) {
+			writeCheckpoint(job, checkpointFile);
+		}
+	}
+
+	private void writeCheckpoint(RewardRecalculationJob job, Path checkpointFile) {
+		try {
+			if (job.getStatus().isTerminal()) {
+				Files.deleteIfExists(checkpointFile);
+				return;
+			}
+			Files.createDirectories(checkpointDirectory);
+			Path temporaryFile = checkpointDirectory.resolve(checkpointFile.getFileName() + ".tmp");
+			try (OutputStream out = Files.newOutputStream(temporaryFile)) {
+				job.toCheckpoint().store(out, "Reward recalculation job");
+			}
+			Files.move(temporaryFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			// The job goes on, a restart would only redo the chunks since the last checkpoint
+			logger.warn("Could not checkpoint reward recalculation job {}", job.getId(), e);
+		}
+	}
+
+	/**
+	 * Restores the unfinished jobs of a previous run, running jobs are resumed from their cursor.
+	 */
+	private void restoreCheckpoints() {
+		if (!Files.isDirectory(checkpointDirectory)) {
+			return;
+		}
+		try (DirectoryStream<Path> checkpointFiles = Files.newDirectoryStream(checkpointDirectory, CHECKPOINT_PREFIX + "*" + CHECKPOINT_SUFFIX)) {
+			for (Path checkpointFile : checkpointFiles) {
+				Properties checkpoint = new Properties();
+				try (InputStream in = Files.newInputStream(checkpointFile)) {
+					checkpoint.load(in);
+					RewardRecalculationJob job = RewardRecalculationJob.fromCheckpoint(checkpoint);
+					if (job.getStatus().isTerminal()) {
+						Files.deleteIfExists(checkpointFile);
+						continue;
+					}
+					jobs.put(job.getId(), job);
+					logger.info("Restored reward recalculation job {}, {} after user {}", job.getId(), job.getStatus(), job.getCursor());
+					if (job.getStatus() == Status.RUNNING) {
+						startWorker(job);
+					}
+				} catch (IOException | RuntimeException e) {
+					logger.warn("Ignoring unreadable checkpoint {}", checkpointFile, e);
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("Could not read the checkpoints of {}", checkpointDirectory, e);
+		}
+	}
+}
@@ -2,6 +2,8 @@ package com.openclassrooms.tourguide.service;
 
 import com.openclassrooms.tourguide.dto.user.User;
 import com.openclassrooms.tourguide.dto.user.UserReward;
+import com.openclassrooms.tourguide.monitoring.RewardsCalculatedEvent;
+import com.openclassrooms.tourguide.service.GeofenceEngine.Geofence;
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
@@ -11,9 +13,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import rewardCentral.RewardCentral;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,17 +28,28 @@ public class RewardsService {
 
 	// proximity in miles
     private static final int DEFAULT_PROXIMITY_BUFFER = 10;
-	private static int proximityBuffer = DEFAULT_PROXIMITY_BUFFER;
 	private static final int ATTRACTION_PROXIMITY_RANGE = 200;
+	// how far beyond the proximity the attractions are looked up to size the geofences, in miles
+	private static final int GEOFENCE_REACH = 100;
 
 	private final GpsUtil gpsUtil;
 	private final RewardCentral rewardsCentral;
 	private final ForkJoinPool forkJoinPool;
+	private final GeofenceEngine geofenceEngine = new GeofenceEngine();
+	private final UserLocks userLocks = new UserLocks();
+	private final DistanceKernel distanceKernel = DistanceKernel.best();
+	private final Hedger rewardPointsHedger = new Hedger("rewardCentral.getAttractionRewardPoints", Hedger.DEFAULT_BUDGET_RATIO);
+	// Default proximity of this instance, used by users who did not set their own
+	private volatile int proximityBuffer = DEFAULT_PROXIMITY_BUFFER;
+	private volatile AttractionCatalog attractionCatalog;
+	private volatile AttractionCounters attractionCounters;
+	private final List<BiConsumer<User, UserReward>> rewardListeners = new CopyOnWriteArrayList<>();
 	
 	public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral) {
 		this.gpsUtil = gpsUtil;
 		this.rewardsCentral = rewardCentral;
 		this.forkJoinPool = initForkJoinPool();
+		log.info("Using {} for bulk distances", distanceKernel.getClass().getSimpleName());
 	}
 
 	/**
@@ -55,63 +71,336 @@ public class RewardsService {
 		return new ForkJoinPool(parallelism);
 	}
 
-	public static void setProximityBuffer(int proximityBuffer) {
-		RewardsService.proximityBuffer = proximityBuffer;
+	/**
+	 * Registers a listener notified of every reward granted, after it was added to the user.
+	 * Listeners run on the rewarding thread and should hand any slow work off.
+	 *
+	 * @param rewardListener The listener
+	 */
+	public void onRewardGranted(BiConsumer<User, UserReward> rewardListener) {
+		rewardListeners.add(rewardListener);
 	}
 
 	/**
-	 * Calculates rewards for a user based on their visited locations and nearby attractions.
-	 * It filters out already rewarded attractions and checks if they are nearby.
-	 * If so, it calculates the reward points and adds them to the user's rewards.
+	 * Sets the default proximity of this instance. Users without their own proximity
+	 * have their rewards re-evaluated against the new radius on their next calculation.
 	 *
-	 * @param user The user for whom to calculate rewards.
+	 * @param proximityBuffer The default proximity in miles.
 	 */
-	public void calculateRewards(User user) {
-		List<VisitedLocation> userLocations = user.getVisitedLocations();
-		List<Attraction> attractions = gpsUtil.getAttractions();
+	public void setProximityBuffer(int proximityBuffer) {
+		this.proximityBuffer = proximityBuffer;
+	}
+
+	/**
+	 * Returns the proximity used to reward a user: their own attraction proximity if they set one,
+	 * the default proximity of this instance otherwise.
+	 *
+	 * @param user The user.
+	 * @return The proximity in miles.
+	 */
+	public int getProximityBuffer(User user) {
+		int attractionProximity = user.getUserPreferences().getAttractionProximity();
+		return attractionProximity > 0 ? attractionProximity : proximityBuffer;
+	}
+
+	/**
+	 * Sets the attraction proximity of a user and recomputes their rewards against the new radius.
+	 *
+	 * @param user                The user.
+	 * @param attractionProximity The proximity in miles, positive.
+	 */
+	public void setAttractionProximity(User user, int attractionProximity) {
+		user.getUserPreferences().setAttractionProximity(attractionProximity);
+		calculateRewards(user);
+	}
+
+	/**
+	 * Returns the attraction catalog, fetched once from gpsUtil.
+	 * Every gpsUtil call counts against its rate limit, so the catalog is not re-fetched on each lookup.
+	 *
+	 * @return The current attraction catalog.
+	 */
+	public AttractionCatalog getAttractionCatalog() {
+		AttractionCatalog catalog = attractionCatalog;
+		if (catalog == null) {
+			synchronized (this) {
+				catalog = attractionCatalog;
+				if (catalog == null) {
+					catalog = new AttractionCatalog(1, gpsUtil.getAttractions());
+					attractionCounters = new AttractionCounters(catalog, null);
+					attractionCatalog = catalog;
+				}
+			}
+		}
+		return catalog;
+	}
+
+	/**
+	 * Reloads the attractions from gpsUtil under a new catalog version.
+	 * Geofences were computed against the previous attractions, so they are all discarded.
+	 */
+	public synchronized void refreshAttractionCatalog() {
+		long version = attractionCatalog == null ? 1 : attractionCatalog.getVersion() + 1;
+		AttractionCatalog catalog = new AttractionCatalog(version, gpsUtil.getAttractions());
+		attractionCounters = new AttractionCounters(catalog, attractionCounters);
+		attractionCatalog = catalog;
+		geofenceEngine.invalidateAll();
+		log.info("Attraction catalog refreshed to version {}", version);
+	}
+
+	/**
+	 * @return The rewards granted per attraction of the current catalog.
+	 */
+	public AttractionCounters getAttractionCounters() {
+		getAttractionCatalog();
+		return attractionCounters;
+	}
+
+	public List<Attraction> getAttractions() {
+		return getAttractionCatalog().getAttractions();
+	}
+
+	/**
+	 * Calculates how far the user still has to travel from their last visited location
+	 * before entering the reward radius of an attraction they have not been rewarded for yet.
+	 *
+	 * @param user The user.
+	 * @return The distance in miles, 0 if the user is already within range,
+	 * or {@link Double#POSITIVE_INFINITY} if there is nothing left to reward.
+	 */
+	public double getDistanceToNearestReward(User user) {
+		if (user.getVisitedLocations().isEmpty()) {
+			return 0;
+		}
+		Location location = user.getLastVisitedLocation().location;
+		int buffer = getProximityBuffer(user);
+		Geofence geofence = geofenceEngine.getGeofence(user, buffer);
+		// The geofence already records the distance from its anchor, no need to scan the attractions
+		Double fromGeofence = userLocks.withLock(user, () ->
+				geofence.getAnchor() != null && geofence.getEvaluatedLocations() == user.getVisitedLocations().size()
+						? Math.max(0, geofence.getRadius() - getDistance(geofence.getAnchor(), location))
+						: null);
+		if (fromGeofence != null) {
+			return fromGeofence;
+		}
 
 		Set<String> rewardedAttractions = user.getUserRewards().stream()
 				.map(r -> r.attraction.attractionName)
 				.collect(Collectors.toSet());
 
-		for (VisitedLocation visitedLocation : userLocations) {
-			attractions.stream()
-					// Filter out attractions already rewarded
-					.filter(attraction -> !rewardedAttractions.contains(attraction.attractionName))
-					// Filter attractions near user's visited location
-					.filter(attraction -> nearAttraction(visitedLocation, attraction))
-					// Calculate rewards and add them to the user
-					.forEach(attraction -> {
-						int rewardPoints = getRewardPoints(attraction, user);
-						user.addUserReward(new UserReward(visitedLocation, attraction, rewardPoints));
-					});
+		AttractionCatalog catalog = getAttractionCatalog();
+		double[] distances = getDistances(catalog, location);
+		double nearest = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < distances.length; i++) {
+			if (!rewardedAttractions.contains(catalog.getAttractions().get(i).attractionName)) {
+				nearest = Math.min(nearest, distances[i]);
+			}
 		}
+		return Math.max(0, nearest - buffer);
 	}
 
 	/**
-	 * Calculates rewards for multiple users in parallel.
-	 * It uses the ForkJoinPool to process each user concurrently.
+	 * Calculates rewards for a user based on their visited locations and nearby attractions.
+	 * The new locations are matched against the attractions, then the matches are rewarded.
+	 *
+	 * @param user The user for whom to calculate rewards.
+	 */
+	public void calculateRewards(User user) {
+		RewardsCalculatedEvent event = new RewardsCalculatedEvent();
+		event.begin();
+		AttractionCatalog catalog = getAttractionCatalog();
+		List<RewardMatch> matches = userLocks.withLock(user, () -> matchNewLocations(user, catalog));
+		matches.forEach(this::grantReward);
+		event.end();
+		if (event.shouldCommit()) {
+			event.userName = user.getUserName();
+			event.users = 1;
+			event.matches = matches.size();
+			event.commit();
+		}
+	}
+
+	/**
+	 * Calculates rewards for multiple users in two phases.
+	 * First the new locations of every user are joined with the attraction catalog, which only costs CPU.
+	 * Then only the matched (user, attraction) pairs are sent to RewardCentral, in parallel,
+	 * so the number of vendor calls and blocked threads follows the number of matches, not of users.
 	 *
 	 * @param users The list of users for whom to calculate rewards.
+	 * @return The number of matches sent to RewardCentral.
+	 */
+	public int calculateMultipleUserRewards(List<User> users) {
+		RewardsCalculatedEvent event = new RewardsCalculatedEvent();
+		event.begin();
+		AttractionCatalog catalog = getAttractionCatalog();
+		int matched = forkJoinPool.submit(() -> {
+			List<RewardMatch> matches = users.parallelStream()
+					.flatMap(user -> userLocks.withLock(user, () -> matchNewLocations(user, catalog)).stream())
+					.toList();
+			log.debug("{} rewards matched for {} users", matches.size(), users.size());
+			matches.parallelStream().forEach(this::grantReward);
+			return matches.size();
+		}).join();
+		event.end();
+		if (event.shouldCommit()) {
+			event.users = users.size();
+			event.matches = matched;
+			event.commit();
+		}
+		return matched;
+	}
+
+	/**
+	 * Recalculates the rewards of multiple users from their whole history, for instance after a proximity change.
+	 * Their geofences are forgotten first, so that every visited location is matched again,
+	 * the rewards already granted being kept.
+	 *
+	 * @param users The list of users whose rewards to recalculate.
+	 * @return The number of matches sent to RewardCentral.
 	 */
-	public void calculateMultipleUserRewards(List<User> users) {
-		forkJoinPool.submit(() ->
-				users.parallelStream().forEach(this::calculateRewards)
-		).join();
+	public int recalculateMultipleUserRewards(List<User> users) {
+		users.forEach(user -> userLocks.withLock(user, () -> geofenceEngine.invalidate(user)));
+		return calculateMultipleUserRewards(users);
+	}
+
+	/**
+	 * Finds the attractions a user should be rewarded for among the locations added since the previous calculation.
+	 * Locations still inside the user's geofence are skipped without looking at the attractions.
+	 * Otherwise, the location is checked against the attractions of the neighbouring grid cells,
+	 * or against the whole catalog with the distance kernel, and the geofence is re-centred on it.
+	 * An attraction is matched at most once, at the first location within range.
+	 * Must be called with the user's lock held.
+	 *
+	 * @param user    The user.
+	 * @param catalog The attractions.
+	 * @return The matches to reward.
+	 */
+	private List<RewardMatch> matchNewLocations(User user, AttractionCatalog catalog) {
+		List<VisitedLocation> userLocations = user.getVisitedLocations();
+		int buffer = getProximityBuffer(user);
+		Geofence geofence = geofenceEngine.getGeofence(user, buffer);
+		List<RewardMatch> matches = new ArrayList<>();
+
+		Set<String> rewardedAttractions = null;
+		for (int i = geofence.getEvaluatedLocations(); i < userLocations.size(); i++) {
+			VisitedLocation visitedLocation = userLocations.get(i);
+			if (geofence.getAnchor() != null
+					&& geofence.contains(getDistance(geofence.getAnchor(), visitedLocation.location))) {
+				geofence.skip();
+				continue;
+			}
+
+			if (rewardedAttractions == null) {
+				rewardedAttractions = user.getUserRewards().stream()
+						.map(r -> r.attraction.attractionName)
+						.collect(Collectors.toSet());
+			}
+			Location location = visitedLocation.location;
+			double reach = buffer + GEOFENCE_REACH;
+			int[] candidates = catalog.getGrid().candidates(location.latitude, location.longitude, reach);
+			double[] distances = candidates == null ? getDistances(catalog, location) : null;
+			int candidateCount = candidates == null ? catalog.size() : candidates.length;
+			// Attractions outside the candidate cells are further than the reach
+			double nearestUnrewarded = candidates == null ? Double.POSITIVE_INFINITY : reach;
+
+			for (int c = 0; c < candidateCount; c++) {
+				int index = candidates == null ? c : candidates[c];
+				Attraction attraction = catalog.getAttractions().get(index);
+				if (rewardedAttractions.contains(attraction.attractionName)) {
+					continue;
+				}
+				double distance = distances == null ? getDistance(attraction, location) : distances[index];
+				if (distance <= buffer) {
+					matches.add(new RewardMatch(user, visitedLocation, attraction, catalog.getVersion(), index));
+					rewardedAttractions.add(attraction.attractionName);
+				} else {
+					nearestUnrewarded = Math.min(nearestUnrewarded, distance);
+				}
+			}
+			geofence.anchor(location, nearestUnrewarded);
+		}
+		return matches;
+	}
+
+	/**
+	 * Fetches the reward points outside the user's lock, then adds the reward under it,
+	 * so that concurrent calculations for the same user cannot add the same reward twice.
+	 * If the points cannot be fetched, the user's geofence is forgotten, since it already moved past the matched
+	 * location: the location is matched again on the next calculation instead of the reward being lost.
+	 * The failure is not propagated, so it does not discard the other matches of a batch.
+	 */
+	private void grantReward(RewardMatch match) {
+		int rewardPoints;
+		try {
+			rewardPoints = getRewardPoints(match.attraction(), match.user());
+		} catch (RuntimeException e) {
+			userLocks.withLock(match.user(), () -> geofenceEngine.invalidate(match.user()));
+			log.warn("Could not reward {} for {}, retrying on their next calculation",
+					match.user().getUserName(), match.attraction().attractionName, e);
+			return;
+		}
+		UserReward userReward = new UserReward(match.visitedLocation(), match.attraction(), rewardPoints);
+		if (userLocks.withLock(match.user(), () -> match.user().addUserReward(userReward))) {
+			attractionCounters.record(match.catalogVersion(), match.attractionIndex(), rewardPoints);
+			rewardListeners.forEach(listener -> listener.accept(match.user(), userReward));
+		}
+	}
+
+	/**
+	 * Removes the oldest visited locations of a user, down to the given number of latest locations.
+	 * Only locations already matched against the attractions are removed, so that no reward is lost,
+	 * and the geofence of the user is shifted to keep pointing at the same locations.
+	 *
+	 * @param user              The user.
+	 * @param retainedLocations The number of latest locations to keep.
+	 * @return The number of locations removed.
+	 */
+	public int trimVisitedLocations(User user, int retainedLocations) {
+		return userLocks.withLock(user, () -> {
+			Geofence geofence = geofenceEngine.getGeofence(user, getProximityBuffer(user));
+			int removable = Math.min(user.getVisitedLocations().size() - retainedLocations, geofence.getEvaluatedLocations());
+			if (removable <= 0) {
+				return 0;
+			}
+			user.removeOldestVisitedLocations(removable);
+			geofence.forget(removable);
+			return removable;
+		});
 	}
 
 	public boolean isWithinAttractionProximity(Attraction attraction, Location location) {
 		return (getDistance(attraction, location) <= ATTRACTION_PROXIMITY_RANGE);
 	}
 	
-	private boolean nearAttraction(VisitedLocation visitedLocation, Attraction attraction) {
-		return (getDistance(attraction, visitedLocation.location) <= proximityBuffer);
+	/**
+	 * @return The locks serializing the updates of each user, shared with the services updating users.
+	 */
+	public UserLocks getUserLocks() {
+		return userLocks;
 	}
-	
+
+	public Hedger getRewardPointsHedger() {
+		return rewardPointsHedger;
+	}
+
 	public int getRewardPoints(Attraction attraction, User user) {
-		return rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
+		return rewardPointsHedger.call(() -> rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId()));
 	}
 	
+	/**
+	 * Evaluates the distances from a location to every attraction of a catalog in one pass,
+	 * vectorised when the runtime allows it.
+	 *
+	 * @param catalog  The attractions.
+	 * @param location The location.
+	 * @return The distances in miles, indexed like the attractions of the catalog.
+	 */
+	public double[] getDistances(AttractionCatalog catalog, Location location) {
+		double[] distances = new double[catalog.size()];
+		distanceKernel.distances(location.latitude, location.longitude, catalog, distances);
+		return distances;
+	}
+
 	public double getDistance(Location loc1, Location loc2) {
         double lat1 = Math.toRadians(loc1.latitude);
         double lon1 = Math.toRadians(loc1.longitude);
@@ -125,4 +414,12 @@ public class RewardsService {
         return STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
 	}
 
+	/**
+	 * An attraction a user is due a reward for, and the visited location that triggered it.
+	 * The attraction is also identified by its index in the catalog it was matched in, to be counted.
+	 */
+	private record RewardMatch(User user, VisitedLocation visitedLocation, Attraction attraction,
+							   long catalogVersion, int attractionIndex) {
+	}
+
 }
@@ -0,0 +1,25 @@
+package com.openclassrooms.tourguide.service;
+
+/**
+ * Evaluates the distances one attraction at a time, with the same formula as {@link RewardsService#getDistance}.
+ */
+public class ScalarDistanceKernel implements DistanceKernel {
+
+	@Override
+	public void distances(double latitude, double longitude, AttractionCatalog catalog, double[] distances) {
+		double lat1 = Math.toRadians(latitude);
+		double lon1 = Math.toRadians(longitude);
+		double sinLat1 = Math.sin(lat1);
+		double cosLat1 = Math.cos(lat1);
+		double[] sinLatitudes = catalog.getSinLatitudes();
+		double[] cosLatitudes = catalog.getCosLatitudes();
+		double[] longitudes = catalog.getLongitudes();
+
+		for (int i = 0; i < catalog.size(); i++) {
+			double angle = Math.acos(sinLat1 * sinLatitudes[i]
+					+ cosLat1 * cosLatitudes[i] * Math.cos(lon1 - longitudes[i]));
+			double nauticalMiles = 60 * Math.toDegrees(angle);
+			distances[i] = STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
+		}
+	}
+}
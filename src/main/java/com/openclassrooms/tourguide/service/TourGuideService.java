@@ -1,9 +1,15 @@
 package com.openclassrooms.tourguide.service;
 
+import com.openclassrooms.tourguide.dto.HotAttractionDTO;
 import com.openclassrooms.tourguide.dto.NearbyAttractionDTO;
+import com.openclassrooms.tourguide.dto.NearbyUserDTO;
 import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.dto.user.UserPreferences;
 import com.openclassrooms.tourguide.dto.user.UserReward;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.monitoring.UserTrackedEvent;
+import com.openclassrooms.tourguide.service.TripDealsPrecomputer.TripDeals;
+import com.openclassrooms.tourguide.service.UserSpatialIndex.NearbyUser;
 import com.openclassrooms.tourguide.tracker.Tracker;
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
@@ -11,42 +17,79 @@ import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import tripPricer.Provider;
 import tripPricer.TripPricer;
 
+import java.nio.file.Path;
 import java.security.SecureRandom;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ForkJoinPool;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Service
 public class TourGuideService {
 	private static final Logger logger = LoggerFactory.getLogger(TourGuideService.class);
+	private static final int NEARBY_ATTRACTIONS = 5;
 
 	private final GpsUtil gpsUtil;
 	private final RewardsService rewardsService;
 	private final TripPricer tripPricer;
 	public final Tracker tracker;
 	private final ForkJoinPool forkJoinPool;
+	private final NearbyAttractionCache nearbyAttractionCache;
+	private final UserSpatialIndex userSpatialIndex;
+	private final UserEventHub userEventHub = new UserEventHub();
+	private final TripDealsPrecomputer tripDealsPrecomputer = new TripDealsPrecomputer(this::getTripDeals);
+	private final UserFootprints userFootprints;
+	private final Hedger userLocationHedger = new Hedger("gpsUtil.getUserLocation", Hedger.DEFAULT_BUDGET_RATIO);
 	boolean testMode = true;
 	public final Random random;
 
 	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
+		this(gpsUtil, rewardsService, null);
+	}
+
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, Path trackerCheckpointFile) {
+		this(gpsUtil, rewardsService, trackerCheckpointFile, true);
+	}
+
+	/**
+	 * @param trackerCheckpointFile The file the tracking schedule is persisted to, so that a restarted node
+	 *                              resumes tracking where it stopped, or null to always start from scratch.
+	 *                              Unset by default, each node must be given a file of its own
+	 * @param trackingEnabled       Whether users are tracked in the background, off by default in the command line
+	 *                              export, which must neither call gpsUtil nor overwrite the node's checkpoint
+	 */
+	@Autowired
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService,
+							@Value("${tourguide.tracker.checkpoint-file:#{null}}") Path trackerCheckpointFile,
+							@Value("${tourguide.tracker.enabled:#{environment['export.file'] == null}}") boolean trackingEnabled) {
 		this.gpsUtil = gpsUtil;
 		this.rewardsService = rewardsService;
 		this.tripPricer = new TripPricer();
+		this.nearbyAttractionCache = new NearbyAttractionCache(rewardsService, NEARBY_ATTRACTIONS);
+		this.userSpatialIndex = new UserSpatialIndex(rewardsService);
+		this.userFootprints = new UserFootprints(rewardsService.getUserLocks(), tripDealsPrecomputer::size);
 		this.forkJoinPool = initForkJoinPool();
+		rewardsService.onRewardGranted(userEventHub::publishReward);
+		// New reward points change the deals
+		rewardsService.onRewardGranted((user, userReward) -> tripDealsPrecomputer.requestRecompute(user));
+		rewardsService.onRewardGranted((user, userReward) -> userFootprints.account(user));
 		this.random = new SecureRandom();
 
 		Locale.setDefault(Locale.US);
@@ -57,7 +100,7 @@ public class TourGuideService {
 			initializeInternalUsers();
 			logger.debug("Finished initializing users");
 		}
-		tracker = new Tracker(this);
+		tracker = new Tracker(this, rewardsService, trackerCheckpointFile, trackingEnabled);
 		addShutDownHook();
 	}
 
@@ -76,6 +119,18 @@ public class TourGuideService {
 		return user.getUserRewards();
 	}
 
+	/**
+	 * Changes the attraction proximity of a user and returns their rewards recomputed against it
+	 *
+	 * @param user                The user
+	 * @param attractionProximity The proximity in miles, positive
+	 * @return The rewards of the user
+	 */
+	public List<UserReward> setAttractionProximity(User user, int attractionProximity) {
+		rewardsService.setAttractionProximity(user, attractionProximity);
+		return user.getUserRewards();
+	}
+
 	public VisitedLocation getUserLocation(User user) {
         return user.getVisitedLocations().isEmpty() ?
 				trackUserLocation(user) :
@@ -90,13 +145,47 @@ public class TourGuideService {
 		return new ArrayList<>(internalUserMap.values());
 	}
 
+	/**
+	 * Iterates over the users lazily, ordered by user name, without copying the user store.
+	 * Users added or removed during the iteration may or may not be seen.
+	 *
+	 * @return A stream of all users
+	 */
+	public Stream<User> streamAllUsers() {
+		return internalUserMap.values().stream();
+	}
+
+	/**
+	 * Reads a page of users, ordered by user name, so that a long process can resume from the last user it saw.
+	 *
+	 * @param afterUserName The user name the page starts after, or null for the first page
+	 * @param limit         The maximum number of users
+	 * @return The users of the page, empty after the last one
+	 */
+	public List<User> getUsersAfter(String afterUserName, int limit) {
+		Map<String, User> users = afterUserName == null ? internalUserMap : internalUserMap.tailMap(afterUserName, false);
+		return users.values().stream().limit(limit).toList();
+	}
+
+	public int getUserCount() {
+		return internalUserMap.size();
+	}
+
 	public void addUser(User user) {
-		if (!internalUserMap.containsKey(user.getUserName())) {
-			internalUserMap.put(user.getUserName(), user);
+		if (internalUserMap.putIfAbsent(user.getUserName(), user) == null) {
+			if (!user.getVisitedLocations().isEmpty()) {
+				userSpatialIndex.update(user, user.getLastVisitedLocation().location);
+			}
+			userFootprints.account(user);
+			tracker.track(user);
 		}
 	}
 
 	public List<Provider> getTripDeals(User user) {
+		return priceTripDeals(user).providers();
+	}
+
+	private TripDeals priceTripDeals(User user) {
 		int cumulativeRewardPoints = user.getUserRewards().stream().mapToInt(UserReward::getRewardPoints).sum();
 		List<Provider> providers = tripPricer.getPrice(
 				TEST_SERVER_API_KEY,
@@ -107,16 +196,90 @@ public class TourGuideService {
 				cumulativeRewardPoints
 		);
 		user.setTripDeals(providers);
-		return providers;
+		TripDeals tripDeals = tripDealsPrecomputer.store(user, providers, cumulativeRewardPoints);
+		userFootprints.account(user);
+		return tripDeals;
+	}
+
+	/**
+	 * Returns the trip deals precomputed in the background, pricing them right away only for users
+	 * who were never priced.
+	 *
+	 * @param user The user
+	 * @return The trip deals, with when and for how many reward points they were priced
+	 */
+	public TripDeals getPrecomputedTripDeals(User user) {
+		TripDeals tripDeals = tripDealsPrecomputer.get(user);
+		// Not read back from the precomputer, which may have evicted them already
+		return tripDeals != null ? tripDeals : priceTripDeals(user);
+	}
+
+	/**
+	 * @return Whether the deals no longer match the user, a recomputation being queued or their points having changed.
+	 */
+	public boolean isStale(User user, TripDeals tripDeals) {
+		int cumulativeRewardPoints = user.getUserRewards().stream().mapToInt(UserReward::getRewardPoints).sum();
+		return tripDealsPrecomputer.isPending(user) || tripDeals.rewardPoints() != cumulativeRewardPoints;
+	}
+
+	/**
+	 * Changes the preferences of a user, their trip deals are recomputed in the background
+	 *
+	 * @param user            The user
+	 * @param userPreferences The new preferences
+	 */
+	public void setUserPreferences(User user, UserPreferences userPreferences) {
+		user.setUserPreferences(userPreferences);
+		tripDealsPrecomputer.requestRecompute(user);
+	}
+
+	public UserEventHub getUserEventHub() {
+		return userEventHub;
+	}
+
+	public UserFootprints getUserFootprints() {
+		return userFootprints;
+	}
+
+	public Hedger getUserLocationHedger() {
+		return userLocationHedger;
 	}
 
 	public VisitedLocation trackUserLocation(User user) {
-		VisitedLocation visitedLocation = gpsUtil.getUserLocation(user.getUserId());
-		user.addToVisitedLocations(visitedLocation);
+		UserTrackedEvent event = new UserTrackedEvent();
+		event.begin();
+		VisitedLocation visitedLocation = userLocationHedger.call(() -> gpsUtil.getUserLocation(user.getUserId()));
+		// The vendor call is made before taking the user's lock, the rewards take it again for their updates
+		rewardsService.getUserLocks().withLock(user, () -> {
+			user.addToVisitedLocations(visitedLocation);
+			userSpatialIndex.update(user, visitedLocation.location);
+			userEventHub.publishLocation(user, visitedLocation);
+		});
 		rewardsService.calculateRewards(user);
+		trimHistory(user);
+		event.end();
+		if (event.shouldCommit()) {
+			event.userName = user.getUserName();
+			event.latitude = visitedLocation.location.latitude;
+			event.longitude = visitedLocation.location.longitude;
+			event.commit();
+		}
 		return visitedLocation;
 	}
 
+	/**
+	 * Trims the history of a user once it exceeds the limit of the footprint thresholds, to three quarters of it
+	 * so that the history is not copied again on every new location, then re-estimates the user.
+	 */
+	private void trimHistory(User user) {
+		int historyLimit = userFootprints.getHistoryLimit();
+		if (historyLimit > 0 && user.getVisitedLocations().size() > historyLimit) {
+			userFootprints.trimmed(rewardsService.trimVisitedLocations(user,
+					Math.max(UserFootprints.MIN_HISTORY, historyLimit - historyLimit / 4)));
+		}
+		userFootprints.account(user);
+	}
+
 	/**
 	 * Track the location of multiple users in parallel using ForkJoinPool
 	 *
@@ -132,43 +295,100 @@ public class TourGuideService {
 	}
 
 	/**
-	 * Get the top 5 nearby attractions for a user based on their last visited location
+	 * Get the top 5 nearby attractions for a user based on their last visited location.
+	 * Only the cached candidates of the user's cell are ranked, and reward points are
+	 * fetched for the 5 selected attractions only.
 	 *
 	 * @param user The user
 	 * @return The top 5 nearby attractions
 	 */
 	public List<NearbyAttractionDTO> getTopFiveNearbyAttractions(User user) {
-		VisitedLocation lastVisitedLocation = getUserLocation(user);
-		List<NearbyAttractionDTO> nearbyAttractions = new ArrayList<>();
-
-		for (Attraction attraction : gpsUtil.getAttractions()) {
-			Location attractionLocation = new Location(attraction.longitude, attraction.latitude);
-			double distance = rewardsService.getDistance(attractionLocation, lastVisitedLocation.location);
-
-			/* If there are less than 5 attractions or the distance is less than the max distance */
-			if (nearbyAttractions.size() < 5 || nearbyAttractions.stream().anyMatch(a -> a.getDistance() > distance)) {
-				/* If there are already 5 attractions, remove the one with the max distance */
-				if (nearbyAttractions.size() == 5) {
-					nearbyAttractions.remove(nearbyAttractions
-							.stream()
-							.max(Comparator.comparing(NearbyAttractionDTO::getDistance))
-							.get());
-				}
-				nearbyAttractions.add(
-						new NearbyAttractionDTO(
-								attraction.attractionName,
-								attractionLocation,
-								lastVisitedLocation.location,
-								distance,
-								rewardsService.getRewardPoints(attraction, user)
-						)
-				);
-			}
-		}
+		Location userLocation = getUserLocation(user).location;
+		AttractionCatalog candidates = nearbyAttractionCache.getCandidates(userLocation);
+		double[] distances = rewardsService.getDistances(candidates, userLocation);
+
+		return IntStream.range(0, distances.length)
+				.boxed()
+				.sorted(Comparator.comparingDouble(i -> distances[i]))
+				.limit(NEARBY_ATTRACTIONS)
+				.map(i -> {
+					Attraction attraction = candidates.getAttractions().get(i);
+					return new NearbyAttractionDTO(
+							attraction.attractionName,
+							new Location(attraction.latitude, attraction.longitude),
+							userLocation,
+							distances[i],
+							rewardsService.getRewardPoints(attraction, user)
+					);
+				})
+				.toList();
+	}
+
+	/**
+	 * Get an attraction by its name
+	 *
+	 * @param attractionName The name of the attraction
+	 * @return The attraction, or null if there is no attraction with this name
+	 */
+	public Attraction getAttraction(String attractionName) {
+		return rewardsService.getAttractions().stream()
+				.filter(attraction -> attraction.attractionName.equals(attractionName))
+				.findFirst()
+				.orElse(null);
+	}
+
+	/**
+	 * Get the users whose latest location is within a radius of an attraction
+	 *
+	 * @param attraction The attraction
+	 * @param radius     The radius in miles
+	 * @return The users within the radius, nearest first
+	 */
+	public List<NearbyUserDTO> getUsersNearAttraction(Attraction attraction, double radius) {
+		return toNearbyUserDTOs(userSpatialIndex.findWithin(attraction, radius));
+	}
+
+	/**
+	 * Get the users whose latest location is the nearest to an attraction
+	 *
+	 * @param attraction The attraction
+	 * @param limit      The number of users to return
+	 * @return The nearest users, nearest first
+	 */
+	public List<NearbyUserDTO> getNearestUsers(Attraction attraction, int limit) {
+		return toNearbyUserDTOs(userSpatialIndex.findNearest(attraction, limit));
+	}
+
+	/**
+	 * Get the attractions with the most rewards granted recently, counted as rewards are granted
+	 *
+	 * @param windowMinutes The window of the recent rewards, in minutes
+	 * @param limit         The number of attractions to return
+	 * @return The hottest attractions first
+	 */
+	public List<HotAttractionDTO> getHotAttractions(int windowMinutes, int limit) {
+		return rewardsService.getAttractionCounters().getHotAttractions(windowMinutes, limit).stream()
+				.map(hotAttraction -> new HotAttractionDTO(
+						hotAttraction.attraction().attractionName,
+						hotAttraction.attraction().city,
+						hotAttraction.attraction().state,
+						hotAttraction.totalRewards(),
+						hotAttraction.totalRewardPoints(),
+						hotAttraction.windowRewards(),
+						hotAttraction.rewardsPerMinute()
+				))
+				.toList();
+	}
 
-		/* Sort nearby attractions by distance */
-		nearbyAttractions.sort(Comparator.comparing(NearbyAttractionDTO::getDistance));
-		return nearbyAttractions;
+	private List<NearbyUserDTO> toNearbyUserDTOs(List<NearbyUser> nearbyUsers) {
+		return nearbyUsers.stream()
+				.map(nearbyUser -> new NearbyUserDTO(
+						nearbyUser.user().getUserId(),
+						nearbyUser.user().getUserName(),
+						nearbyUser.location(),
+						nearbyUser.distance()
+				))
+				.toList();
 	}
 
 	private void addShutDownHook() {
@@ -183,7 +403,7 @@ public class TourGuideService {
 	private static final String TEST_SERVER_API_KEY = "test-server-api-key";
 	// Database connection will be used for external users, but for testing purposes
 	// internal users are provided and stored in memory
-	private final Map<String, User> internalUserMap = new HashMap<>();
+	private final ConcurrentNavigableMap<String, User> internalUserMap = new ConcurrentSkipListMap<>();
 
 	private void initializeInternalUsers() {
 		IntStream.range(0, InternalTestHelper.getInternalUserNumber()).forEach(i -> {
@@ -192,6 +412,8 @@ public class TourGuideService {
 			String email = userName + "@tourGuide.com";
 			User user = new User(UUID.randomUUID(), userName, phone, email);
 			generateUserLocationHistory(user);
+			userSpatialIndex.update(user, user.getLastVisitedLocation().location);
+			userFootprints.account(user);
 
 			internalUserMap.put(userName, user);
 		});
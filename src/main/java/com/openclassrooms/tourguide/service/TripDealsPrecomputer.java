@@ -0,0 +1,162 @@
+package com.openclassrooms.tourguide.service;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tripPricer.Provider;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Recomputes the trip deals of users in the background, so that requests are served without calling TripPricer.
+ * <p>
+ * A user is queued for a recomputation when their reward points or their preferences change, at most once
+ * until the recomputation runs. A small pool of workers takes the most recently located users first,
+ * as they are the most likely to ask for deals.
+ * <p>
+ * The deals of a bounded number of users are kept, the least recently used being evicted beyond it:
+ * an evicted user is cold again, and priced on their next request.
+ * <p>
+ * The workers are daemon threads that exit after a minute without recomputation, so an idle precomputer
+ * holds no thread and needs no shutdown.
+ */
+public class TripDealsPrecomputer {
+	private static final Logger logger = LoggerFactory.getLogger(TripDealsPrecomputer.class);
+	private static final int WORKERS = 4;
+	public static final int DEFAULT_MAX_USERS = 100_000;
+
+	/**
+	 * The trip deals of a user, with the reward points they were priced with.
+	 */
+	public record TripDeals(List<Provider> providers, Date computedAt, int rewardPoints) {
+	}
+
+	private final Consumer<User> pricer;
+	private final Map<UUID, TripDeals> tripDeals;
+	private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(WORKERS, WORKERS, 1, TimeUnit.MINUTES,
+			new PriorityBlockingQueue<>(), runnable -> {
+		Thread thread = new Thread(runnable, "trip-deals");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * @param pricer Prices the trip deals of a user and {@link #store(User, List, int) stores} them.
+	 */
+	public TripDealsPrecomputer(Consumer<User> pricer) {
+		this(pricer, DEFAULT_MAX_USERS);
+	}
+
+	/**
+	 * @param pricer   Prices the trip deals of a user and {@link #store(User, List, int) stores} them.
+	 * @param maxUsers The number of users whose trip deals are kept.
+	 */
+	public TripDealsPrecomputer(Consumer<User> pricer, int maxUsers) {
+		this.pricer = pricer;
+		this.tripDeals = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<UUID, TripDeals> eldest) {
+				return size() > maxUsers;
+			}
+		});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Queues a recomputation of the trip deals of a user, unless one is already queued.
+	 *
+	 * @param user The user
+	 */
+	public void requestRecompute(User user) {
+		if (pending.add(user.getUserId())) {
+			try {
+				executor.execute(new Recomputation(user));
+			} catch (RejectedExecutionException e) {
+				// Shutting down
+				pending.remove(user.getUserId());
+			}
+		}
+	}
+
+	/**
+	 * @return The stored trip deals, which may be evicted at any time after.
+	 */
+	public TripDeals store(User user, List<Provider> providers, int rewardPoints) {
+		TripDeals userTripDeals = new TripDeals(providers, new Date(), rewardPoints);
+		tripDeals.put(user.getUserId(), userTripDeals);
+		return userTripDeals;
+	}
+
+	/**
+	 * @return The latest trip deals of a user, or null if they were never priced.
+	 */
+	public TripDeals get(User user) {
+		return tripDeals.get(user.getUserId());
+	}
+
+	/**
+	 * @return Whether a recomputation of the user's trip deals is queued.
+	 */
+	public boolean isPending(User user) {
+		return pending.contains(user.getUserId());
+	}
+
+	public int getQueueSize() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * @return The number of users whose trip deals are kept.
+	 */
+	public int size() {
+		return tripDeals.size();
+	}
+
+	/**
+	 * Stops the workers, the queued recomputations are dropped.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+		pending.clear();
+	}
+
+	private class Recomputation implements Runnable, Comparable<Recomputation> {
+		private final User user;
+		private final long lastActive;
+
+		Recomputation(User user) {
+			this.user = user;
+			Date latest = user.getLatestLocationTimestamp();
+			this.lastActive = latest == null ? 0 : latest.getTime();
+		}
+
+		@Override
+		public void run() {
+			// Changes from now on queue a new recomputation
+			pending.remove(user.getUserId());
+			try {
+				pricer.accept(user);
+			} catch (RuntimeException e) {
+				logger.warn("Could not recompute the trip deals of {}", user.getUserName(), e);
+			}
+		}
+
+		@Override
+		public int compareTo(Recomputation other) {
+			return Long.compare(other.lastActive, lastActive);
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package com.openclassrooms.tourguide.service;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.dto.user.UserReward;
+import gpsUtil.location.VisitedLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pushes the new visited locations and rewards of users to their subscribers.
+ * <p>
+ * Events are delivered by a fixed pool of dispatcher threads, whatever the number of subscribers:
+ * a subscriber with pending events is queued for dispatch at most once. Locations are conflated,
+ * a subscriber only gets the latest one, while rewards are queued; a subscriber falling more than
+ * {@link #MAX_PENDING_REWARDS} rewards behind is dropped.
+ * <p>
+ * A write to a stalled client can block its dispatcher thread. A watchdog drops the subscribers whose write
+ * has been in flight for longer than the write timeout, and adds a dispatcher thread for as long as the write
+ * stays blocked, so that stalled clients never hold back the events of the others.
+ */
+public class UserEventHub {
+	private static final Logger logger = LoggerFactory.getLogger(UserEventHub.class);
+	public static final String LOCATION_EVENT = "location";
+	public static final String REWARD_EVENT = "reward";
+	public static final int DEFAULT_MAX_SUBSCRIBERS = 10_000;
+	private static final int DISPATCHER_THREADS = 4;
+	private static final int MAX_PENDING_REWARDS = 100;
+	// Dispatcher threads added to replace the ones blocked by stalled writes, at most
+	private static final int MAX_STALLED_WRITES = 64;
+	public static final long DEFAULT_WRITE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+	private static final int IDLE = 0;
+	private static final int WRITING = 1;
+	private static final int STALLED = 2;
+
+	/**
+	 * Where the events of a subscription are written, for instance a server-sent events stream.
+	 */
+	public interface EventSink {
+		void send(String event, Object data) throws IOException;
+
+		void close();
+	}
+
+	private final Map<UUID, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+	private final AtomicInteger subscriberCount = new AtomicInteger();
+	private final int maxSubscribers;
+	private final long writeTimeoutNanos;
+	private final ThreadPoolExecutor dispatcher = new ThreadPoolExecutor(DISPATCHER_THREADS, DISPATCHER_THREADS,
+			1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), runnable -> {
+		Thread thread = new Thread(runnable, "user-event-dispatcher");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "user-event-watchdog");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final Set<Subscription> writing = ConcurrentHashMap.newKeySet();
+	private int stalledWrites;
+
+	public UserEventHub() {
+		this(DEFAULT_MAX_SUBSCRIBERS);
+	}
+
+	public UserEventHub(int maxSubscribers) {
+		this(maxSubscribers, DEFAULT_WRITE_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * @param maxSubscribers     The maximum number of subscribers
+	 * @param writeTimeoutMillis How long a write may stay in flight before its subscriber is dropped
+	 */
+	public UserEventHub(int maxSubscribers, long writeTimeoutMillis) {
+		this.maxSubscribers = maxSubscribers;
+		this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+		long checkEvery = Math.max(1, writeTimeoutMillis / 4);
+		watchdog.scheduleWithFixedDelay(this::dropStalledSubscribers, checkEvery, checkEvery, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Subscribes to the events of a user.
+	 *
+	 * @param user The user
+	 * @param sink Where the events are written
+	 * @return The subscription, or null if the hub already has its maximum number of subscribers.
+	 */
+	public Subscription subscribe(User user, EventSink sink) {
+		if (subscriberCount.incrementAndGet() > maxSubscribers) {
+			subscriberCount.decrementAndGet();
+			return null;
+		}
+		Subscription subscription = new Subscription(user.getUserId(), sink);
+		subscriptions.computeIfAbsent(user.getUserId(), id -> ConcurrentHashMap.newKeySet()).add(subscription);
+		return subscription;
+	}
+
+	public void publishLocation(User user, VisitedLocation visitedLocation) {
+		Set<Subscription> userSubscriptions = subscriptions.get(user.getUserId());
+		if (userSubscriptions != null) {
+			userSubscriptions.forEach(subscription -> subscription.offerLocation(visitedLocation));
+		}
+	}
+
+	public void publishReward(User user, UserReward userReward) {
+		Set<Subscription> userSubscriptions = subscriptions.get(user.getUserId());
+		if (userSubscriptions != null) {
+			userSubscriptions.forEach(subscription -> subscription.offerReward(userReward));
+		}
+	}
+
+	public int getSubscriberCount() {
+		return subscriberCount.get();
+	}
+
+	/**
+	 * Drops the subscribers whose write has been in flight for too long, and replaces their dispatcher thread
+	 * until the write returns.
+	 */
+	private void dropStalledSubscribers() {
+		long now = System.nanoTime();
+		for (Subscription subscription : writing) {
+			if (now - subscription.writeStartedAt > writeTimeoutNanos
+					&& subscription.writeState.compareAndSet(WRITING, STALLED)) {
+				logger.debug("Dropping stalled subscriber of user {}", subscription.userId);
+				addDispatcherThread(1);
+				subscription.drop();
+			}
+		}
+	}
+
+	private synchronized void addDispatcherThread(int delta) {
+		stalledWrites += delta;
+		int threads = DISPATCHER_THREADS + Math.min(stalledWrites, MAX_STALLED_WRITES);
+		if (delta > 0) {
+			dispatcher.setMaximumPoolSize(threads);
+			dispatcher.setCorePoolSize(threads);
+		} else {
+			dispatcher.setCorePoolSize(threads);
+			dispatcher.setMaximumPoolSize(threads);
+		}
+	}
+
+	private void remove(Subscription subscription) {
+		subscriptions.computeIfPresent(subscription.userId, (id, userSubscriptions) -> {
+			userSubscriptions.remove(subscription);
+			return userSubscriptions.isEmpty() ? null : userSubscriptions;
+		});
+		subscriberCount.decrementAndGet();
+	}
+
+	public class Subscription {
+		private final UUID userId;
+		private final EventSink sink;
+		private final AtomicReference<VisitedLocation> latestLocation = new AtomicReference<>();
+		private final BlockingQueue<UserReward> pendingRewards = new ArrayBlockingQueue<>(MAX_PENDING_REWARDS);
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private final AtomicBoolean cancelled = new AtomicBoolean();
+		private final AtomicInteger writeState = new AtomicInteger(IDLE);
+		private volatile long writeStartedAt;
+
+		private Subscription(UUID userId, EventSink sink) {
+			this.userId = userId;
+			this.sink = sink;
+		}
+
+		/**
+		 * Ends the subscription, without closing its sink.
+		 */
+		public void cancel() {
+			if (cancelled.compareAndSet(false, true)) {
+				remove(this);
+			}
+		}
+
+		public boolean isCancelled() {
+			return cancelled.get();
+		}
+
+		private void offerLocation(VisitedLocation visitedLocation) {
+			latestLocation.set(visitedLocation);
+			schedule();
+		}
+
+		private void offerReward(UserReward userReward) {
+			if (!pendingRewards.offer(userReward)) {
+				logger.debug("Dropping slow subscriber of user {}", userId);
+				drop();
+				return;
+			}
+			schedule();
+		}
+
+		private void schedule() {
+			if (!cancelled.get() && scheduled.compareAndSet(false, true)) {
+				dispatcher.execute(this::dispatch);
+			}
+		}
+
+		private void dispatch() {
+			try {
+				VisitedLocation visitedLocation = latestLocation.getAndSet(null);
+				if (visitedLocation != null) {
+					send(LOCATION_EVENT, visitedLocation);
+				}
+				UserReward userReward;
+				while (!cancelled.get() && (userReward = pendingRewards.poll()) != null) {
+					send(REWARD_EVENT, userReward);
+				}
+			} catch (IOException | RuntimeException e) {
+				logger.debug("Subscriber of user {} is gone", userId, e);
+				drop();
+				return;
+			} finally {
+				scheduled.set(false);
+			}
+			// Events published during the dispatch
+			if (latestLocation.get() != null || !pendingRewards.isEmpty()) {
+				schedule();
+			}
+		}
+
+		/**
+		 * Writes an event, visible to the watchdog while in flight
+		 */
+		private void send(String event, Object data) throws IOException {
+			writeStartedAt = System.nanoTime();
+			writeState.set(WRITING);
+			writing.add(this);
+			try {
+				sink.send(event, data);
+			} finally {
+				writing.remove(this);
+				if (!writeState.compareAndSet(WRITING, IDLE)) {
+					// The watchdog added a thread in place of this one, which is free again
+					addDispatcherThread(-1);
+					writeState.set(IDLE);
+				}
+			}
+		}
+
+		private void drop() {
+			cancel();
+			sink.close();
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package com.openclassrooms.tourguide.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonFactoryBuilder;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.dto.user.UserReward;
+import gpsUtil.location.VisitedLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Iterator;
+
+/**
+ * Exports the visited locations and rewards of every user.
+ * <p>
+ * Users are read lazily from the user store and written one at a time,
+ * so memory usage does not depend on the number of users.
+ */
+@Service
+public class UserExportService {
+	private static final Logger logger = LoggerFactory.getLogger(UserExportService.class);
+	private static final String CSV_HEADER = "type,userId,userName,timeVisited,latitude,longitude,attractionName,rewardPoints";
+	private static final int FLUSH_EVERY_USERS = 1000;
+
+	private final TourGuideService tourGuideService;
+	// Lines are separated by writeJson, Jackson would otherwise start every line after the first with a space
+	private final JsonFactory jsonFactory = new JsonFactoryBuilder()
+			.disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+			.rootValueSeparator((String) null)
+			.build();
+
+	public UserExportService(TourGuideService tourGuideService) {
+		this.tourGuideService = tourGuideService;
+	}
+
+	/**
+	 * Writes every user to the output stream. Visited locations and rewards are kept when their
+	 * visit time is within the time window; when a window is given, users with nothing in it are left out.
+	 * The output stream is flushed regularly but not closed.
+	 *
+	 * @param out    The output stream.
+	 * @param format The export format.
+	 * @param from   The start of the time window, inclusive, or null for no lower bound.
+	 * @param to     The end of the time window, exclusive, or null for no upper bound.
+	 * @return The number of exported users.
+	 * @throws IOException If writing fails, for instance when the client disconnects.
+	 */
+	public long export(OutputStream out, ExportFormat format, Date from, Date to) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		JsonGenerator jsonGenerator = format == ExportFormat.NDJSON ? jsonFactory.createGenerator(writer) : null;
+		boolean windowed = from != null || to != null;
+		if (format == ExportFormat.CSV) {
+			writer.write(CSV_HEADER);
+			writer.write('\n');
+		}
+
+		long exported = 0;
+		Iterator<User> users = tourGuideService.streamAllUsers().iterator();
+		while (users.hasNext()) {
+			User user = users.next();
+			if (windowed && !hasActivity(user, from, to)) {
+				continue;
+			}
+			if (jsonGenerator != null) {
+				writeJson(jsonGenerator, user, from, to);
+			} else {
+				writeCsv(writer, user, from, to);
+			}
+			if (++exported % FLUSH_EVERY_USERS == 0) {
+				flush(jsonGenerator, writer);
+			}
+		}
+		flush(jsonGenerator, writer);
+		logger.debug("Exported {} users as {}", exported, format);
+		return exported;
+	}
+
+	private void flush(JsonGenerator jsonGenerator, Writer writer) throws IOException {
+		if (jsonGenerator != null) {
+			jsonGenerator.flush();
+		}
+		writer.flush();
+	}
+
+	private boolean hasActivity(User user, Date from, Date to) {
+		return user.getVisitedLocations().stream().anyMatch(v -> isWithin(v, from, to))
+				|| user.getUserRewards().stream().anyMatch(r -> isWithin(r.visitedLocation, from, to));
+	}
+
+	private boolean isWithin(VisitedLocation visitedLocation, Date from, Date to) {
+		Date timeVisited = visitedLocation.timeVisited;
+		return (from == null || !timeVisited.before(from)) && (to == null || timeVisited.before(to));
+	}
+
+	private void writeJson(JsonGenerator json, User user, Date from, Date to) throws IOException {
+		json.writeStartObject();
+		json.writeStringField("userId", user.getUserId().toString());
+		json.writeStringField("userName", user.getUserName());
+
+		json.writeArrayFieldStart("visitedLocations");
+		for (VisitedLocation visitedLocation : user.getVisitedLocations()) {
+			if (isWithin(visitedLocation, from, to)) {
+				json.writeStartObject();
+				json.writeStringField("timeVisited", visitedLocation.timeVisited.toInstant().toString());
+				json.writeNumberField("latitude", visitedLocation.location.latitude);
+				json.writeNumberField("longitude", visitedLocation.location.longitude);
+				json.writeEndObject();
+			}
+		}
+		json.writeEndArray();
+
+		json.writeArrayFieldStart("rewards");
+		for (UserReward userReward : user.getUserRewards()) {
+			if (isWithin(userReward.visitedLocation, from, to)) {
+				json.writeStartObject();
+				json.writeStringField("timeVisited", userReward.visitedLocation.timeVisited.toInstant().toString());
+				json.writeStringField("attractionName", userReward.attraction.attractionName);
+				json.writeNumberField("rewardPoints", userReward.getRewardPoints());
+				json.writeEndObject();
+			}
+		}
+		json.writeEndArray();
+
+		json.writeEndObject();
+		json.writeRaw('\n');
+	}
+
+	private void writeCsv(Writer writer, User user, Date from, Date to) throws IOException {
+		String userColumns = user.getUserId() + "," + csvValue(user.getUserName()) + ",";
+		for (VisitedLocation visitedLocation : user.getVisitedLocations()) {
+			if (isWithin(visitedLocation, from, to)) {
+				writer.write("location," + userColumns
+						+ visitedLocation.timeVisited.toInstant() + ","
+						+ visitedLocation.location.latitude + ","
+						+ visitedLocation.location.longitude + ",,\n");
+			}
+		}
+		for (UserReward userReward : user.getUserRewards()) {
+			if (isWithin(userReward.visitedLocation, from, to)) {
+				writer.write("reward," + userColumns
+						+ userReward.visitedLocation.timeVisited.toInstant() + ","
+						+ userReward.visitedLocation.location.latitude + ","
+						+ userReward.visitedLocation.location.longitude + ","
+						+ csvValue(userReward.attraction.attractionName) + ","
+						+ userReward.getRewardPoints() + "\n");
+			}
+		}
+	}
+
+	/**
+	 * Quotes a CSV value when it contains a separator, a quote or a line break.
+	 */
+	private String csvValue(String value) {
+		if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+			return '"' + value.replace("\"", "\"\"") + '"';
+		}
+		return value;
+	}
+}
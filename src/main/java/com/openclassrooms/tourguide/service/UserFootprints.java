@@ -0,0 +1,264 @@
+package com.openclassrooms.tourguide.service;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.dto.user.UserReward;
+import gpsUtil.location.VisitedLocation;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Estimates the memory retained by each user of the store and by the whole store, to plan the heap of a node.
+ * <p>
+ * A user's estimate only depends on the sizes of their visited locations, rewards and trip deals, so it is
+ * recomputed without walking their history whenever the user changes, and the difference with the previous estimate
+ * is applied to the totals and histograms: nothing ever walks the users or the heap. The sizes are read under the
+ * user's lock and the estimate replaced before releasing it, so that an older estimate cannot overwrite a newer one.
+ * Sizes are estimated for a 64-bit JVM with compressed references. Objects shared between users,
+ * like the attractions, are not counted. The trip deals kept by the {@link TripDealsPrecomputer} share their
+ * providers with the users, only their entries are added to the total.
+ * <p>
+ * Also holds the thresholds above which the oldest visited locations of the users are trimmed.
+ */
+public class UserFootprints {
+	// The user, their name, phone, email, preferences, lists, and their entries in the store and indexes
+	public static final long USER_BYTES = 640;
+	// A VisitedLocation, its Location and Date, and its slot in the history
+	public static final long VISITED_LOCATION_BYTES = 88;
+	// A UserReward and its slot, the visited location it references is counted with the history,
+	// or on its own once trimmed from it, the reward keeping it alive
+	public static final long USER_REWARD_BYTES = 32;
+	// A Provider, its trip id and its slot
+	public static final long TRIP_DEAL_BYTES = 72;
+	// A TripDeals of the precomputer, its Date, and its entry in the precomputer's map
+	public static final long PRECOMPUTED_TRIP_DEALS_BYTES = 96;
+	// Trimming keeps at least this many visited locations, the tracker needs a few to estimate movement
+	public static final int MIN_HISTORY = 10;
+	// Power-of-two buckets, the last one collects everything above
+	private static final int HISTOGRAM_BUCKETS = 32;
+
+	private final UserLocks userLocks;
+	private final IntSupplier precomputedTripDeals;
+	private final Map<UUID, Footprint> footprints = new ConcurrentHashMap<>();
+	private final AtomicLong users = new AtomicLong();
+	private final AtomicLong totalBytes = new AtomicLong();
+	private final AtomicLong visitedLocations = new AtomicLong();
+	private final AtomicLong userRewards = new AtomicLong();
+	private final AtomicLong tripDeals = new AtomicLong();
+	private final AtomicLongArray historyLengthHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+	private final AtomicLongArray bytesHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+	private final LongAdder trimmedLocations = new LongAdder();
+	private volatile int maxVisitedLocations;
+	private volatile long maxTotalBytes;
+
+	/**
+	 * @param userLocks            The locks the users are changed under
+	 * @param precomputedTripDeals The number of trip deals kept by the precomputer
+	 */
+	public UserFootprints(UserLocks userLocks, IntSupplier precomputedTripDeals) {
+		this.userLocks = userLocks;
+		this.precomputedTripDeals = precomputedTripDeals;
+	}
+
+	/**
+	 * Re-estimates a user after a change, or adds them to the estimates
+	 *
+	 * @param user The user
+	 * @return The new estimate of the user
+	 */
+	public Footprint account(User user) {
+		return userLocks.withLock(user, () -> {
+			Footprint footprint = estimate(user);
+			footprints.compute(user.getUserId(), (userId, previous) -> {
+				if (previous == null) {
+					users.incrementAndGet();
+				} else {
+					apply(previous, -1);
+				}
+				apply(footprint, 1);
+				return footprint;
+			});
+			return footprint;
+		});
+	}
+
+	/**
+	 * Rewards reference the location they were granted at, which is retained on its own once trimmed
+	 * from the history. Histories are in chronological order, so those are the locations older than the oldest one left.
+	 */
+	private static Footprint estimate(User user) {
+		List<VisitedLocation> history = user.getVisitedLocations();
+		Date oldest = history.isEmpty() ? null : history.get(0).timeVisited;
+		int trimmedRewardLocations = 0;
+		for (UserReward userReward : user.getUserRewards()) {
+			if (oldest == null || userReward.visitedLocation.timeVisited.before(oldest)) {
+				trimmedRewardLocations++;
+			}
+		}
+		return new Footprint(history.size(), user.getUserRewards().size(), trimmedRewardLocations,
+				user.getTripDeals().size());
+	}
+
+	/**
+	 * @return The latest estimate of the user, or null if they were never accounted for
+	 */
+	public Footprint getFootprint(User user) {
+		return footprints.get(user.getUserId());
+	}
+
+	/**
+	 * Records that visited locations were trimmed, the user being re-estimated separately
+	 *
+	 * @param locations The number of locations removed
+	 */
+	public void trimmed(int locations) {
+		trimmedLocations.add(locations);
+	}
+
+	/**
+	 * Returns the number of visited locations above which a user's history is trimmed.
+	 * Once the total estimate goes over {@link #setMaxTotalBytes(long) its budget}, each user is also limited
+	 * to an even share of the budget, so the store shrinks back as users are tracked.
+	 *
+	 * @return The limit, 0 when histories are not trimmed
+	 */
+	public int getHistoryLimit() {
+		int limit = maxVisitedLocations;
+		long budget = maxTotalBytes;
+		long userCount = users.get();
+		if (budget > 0 && userCount > 0 && getTotalBytes() > budget) {
+			long share = Math.max(MIN_HISTORY, (budget / userCount - USER_BYTES) / VISITED_LOCATION_BYTES);
+			limit = (int) (limit == 0 ? Math.min(share, Integer.MAX_VALUE) : Math.min(limit, share));
+		}
+		return limit;
+	}
+
+	/**
+	 * @param maxVisitedLocations The number of visited locations kept per user, 0 to keep them all
+	 */
+	public void setMaxVisitedLocations(int maxVisitedLocations) {
+		if (maxVisitedLocations != 0 && maxVisitedLocations < MIN_HISTORY) {
+			throw new IllegalArgumentException("At least " + MIN_HISTORY + " visited locations must be kept");
+		}
+		this.maxVisitedLocations = maxVisitedLocations;
+	}
+
+	public int getMaxVisitedLocations() {
+		return maxVisitedLocations;
+	}
+
+	/**
+	 * @param maxTotalBytes The estimated size of the store above which histories are trimmed, 0 for no limit
+	 */
+	public void setMaxTotalBytes(long maxTotalBytes) {
+		this.maxTotalBytes = maxTotalBytes;
+	}
+
+	public long getMaxTotalBytes() {
+		return maxTotalBytes;
+	}
+
+	public long getUsers() {
+		return users.get();
+	}
+
+	/**
+	 * @return The estimated bytes of the users and of the precomputed trip deals
+	 */
+	public long getTotalBytes() {
+		return totalBytes.get() + getPrecomputedTripDeals() * PRECOMPUTED_TRIP_DEALS_BYTES;
+	}
+
+	public long getVisitedLocations() {
+		return visitedLocations.get();
+	}
+
+	public long getUserRewards() {
+		return userRewards.get();
+	}
+
+	public long getTripDeals() {
+		return tripDeals.get();
+	}
+
+	public long getPrecomputedTripDeals() {
+		return precomputedTripDeals.getAsInt();
+	}
+
+	public long getTrimmedLocations() {
+		return trimmedLocations.sum();
+	}
+
+	/**
+	 * @return The number of users per range of history lengths, keyed by range, empty ranges left out
+	 */
+	public Map<String, Long> getHistoryLengthHistogram() {
+		return toMap(historyLengthHistogram);
+	}
+
+	/**
+	 * @return The number of users per range of estimated bytes, keyed by range, empty ranges left out
+	 */
+	public Map<String, Long> getBytesHistogram() {
+		return toMap(bytesHistogram);
+	}
+
+	private void apply(Footprint footprint, int sign) {
+		totalBytes.addAndGet(sign * footprint.bytes());
+		visitedLocations.addAndGet(sign * footprint.visitedLocations());
+		userRewards.addAndGet(sign * footprint.userRewards());
+		tripDeals.addAndGet(sign * footprint.tripDeals());
+		historyLengthHistogram.addAndGet(bucket(footprint.visitedLocations()), sign);
+		bytesHistogram.addAndGet(bucket(footprint.bytes()), sign);
+	}
+
+	/**
+	 * Bucket 0 holds 0, bucket i holds [2^(i-1), 2^i - 1]
+	 */
+	private static int bucket(long value) {
+		return Math.min(HISTOGRAM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+	}
+
+	private static Map<String, Long> toMap(AtomicLongArray histogram) {
+		Map<String, Long> map = new LinkedHashMap<>();
+		for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+			long count = histogram.get(i);
+			if (count == 0) {
+				continue;
+			}
+			long from = i == 0 ? 0 : 1L << (i - 1);
+			String range = i == HISTOGRAM_BUCKETS - 1 ? from + "+" : from + "-" + (i == 0 ? 0 : (1L << i) - 1);
+			map.put(range, count);
+		}
+		return map;
+	}
+
+	/**
+	 * The sizes a user's estimate is computed from
+	 *
+	 * @param visitedLocations       The length of their history
+	 * @param userRewards            The number of their rewards
+	 * @param trimmedRewardLocations The number of locations trimmed from their history that their rewards retain
+	 * @param tripDeals              The number of their trip deals
+	 */
+	public record Footprint(int visitedLocations, int userRewards, int trimmedRewardLocations, int tripDeals) {
+
+		/**
+		 * @return The estimated bytes retained by the user
+		 */
+		public long bytes() {
+			return USER_BYTES
+					+ (visitedLocations + trimmedRewardLocations) * VISITED_LOCATION_BYTES
+					+ userRewards * USER_REWARD_BYTES
+					+ tripDeals * TRIP_DEAL_BYTES;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.openclassrooms.tourguide.service;
+
+import com.openclassrooms.tourguide.dto.user.User;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serializes the updates of each user with striped locks.
+ * <p>
+ * A user always maps to the same stripe, so there is one writer per user at a time, while users on
+ * different stripes are updated in parallel. The locks are reentrant, and should only guard the
+ * changes to a user's state: vendor calls are made outside, so that a slow call does not block
+ * the other users of its stripe.
+ */
+public class UserLocks {
+	public static final int DEFAULT_STRIPES = 1024;
+
+	private final ReentrantLock[] stripes;
+	private final int mask;
+
+	public UserLocks() {
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * @param stripes The number of locks, rounded up to a power of two.
+	 */
+	public UserLocks(int stripes) {
+		int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+		this.stripes = new ReentrantLock[size];
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = new ReentrantLock();
+		}
+		this.mask = size - 1;
+	}
+
+	public int getStripes() {
+		return stripes.length;
+	}
+
+	public <T> T withLock(User user, Supplier<T> update) {
+		ReentrantLock lock = lockOf(user);
+		lock.lock();
+		try {
+			return update.get();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void withLock(User user, Runnable update) {
+		ReentrantLock lock = lockOf(user);
+		lock.lock();
+		try {
+			update.run();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The index of the stripe guarding the user, users on different stripes never block each other.
+	 */
+	public int stripeOf(User user) {
+		int hash = user.getUserId().hashCode();
+		// Spread the high bits, as in HashMap
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	private ReentrantLock lockOf(User user) {
+		return stripes[stripeOf(user)];
+	}
+}
@@ -0,0 +1,160 @@
+package com.openclassrooms.tourguide.service;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import gpsUtil.location.Location;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Spatial index of the users' latest locations, to answer "which users are near this location".
+ * <p>
+ * Users are bucketed in a grid of cells of {@value #CELL_DEGREES} degrees. An update only touches the
+ * user's own entry and the buckets of the old and new cells, so concurrent updates of different users
+ * never contend on a global lock. Queries only visit the cells overlapping the searched area.
+ */
+public class UserSpatialIndex {
+	private static final double CELL_DEGREES = 0.1;
+	private static final int LATITUDE_CELLS = (int) Math.ceil(180 / CELL_DEGREES);
+	private static final int LONGITUDE_CELLS = (int) Math.ceil(360 / CELL_DEGREES);
+	private static final double MILES_PER_DEGREE_OF_LATITUDE = 69.0;
+	// Beyond this number of cells, scanning every user is cheaper than visiting the cells
+	private static final long MAX_VISITED_CELLS = 10_000;
+
+	private final RewardsService rewardsService;
+	private final Map<UUID, IndexedUser> users = new ConcurrentHashMap<>();
+	private final Map<Long, Map<UUID, IndexedUser>> cells = new ConcurrentHashMap<>();
+
+	public UserSpatialIndex(RewardsService rewardsService) {
+		this.rewardsService = rewardsService;
+	}
+
+	/**
+	 * Records the latest location of a user, moving them to another cell if needed.
+	 *
+	 * @param user     The user.
+	 * @param location The latest location of the user.
+	 */
+	public void update(User user, Location location) {
+		long cell = cellOf(location.latitude, location.longitude);
+		IndexedUser indexedUser = new IndexedUser(user, location, cell);
+		// compute() serialises the updates of this user only
+		users.compute(user.getUserId(), (id, previous) -> {
+			if (previous != null && previous.cell != cell) {
+				cells.computeIfPresent(previous.cell, (c, bucket) -> {
+					bucket.remove(id);
+					return bucket.isEmpty() ? null : bucket;
+				});
+			}
+			cells.compute(cell, (c, bucket) -> {
+				Map<UUID, IndexedUser> updated = bucket == null ? new ConcurrentHashMap<>() : bucket;
+				updated.put(id, indexedUser);
+				return updated;
+			});
+			return indexedUser;
+		});
+	}
+
+	public int size() {
+		return users.size();
+	}
+
+	/**
+	 * @param location The centre of the search.
+	 * @param radius   The search radius in miles.
+	 * @return The users whose latest location is within the radius, nearest first.
+	 */
+	public List<NearbyUser> findWithin(Location location, double radius) {
+		List<NearbyUser> nearbyUsers = new ArrayList<>();
+		forEachCandidate(location, radius, indexedUser -> {
+			double distance = rewardsService.getDistance(location, indexedUser.location);
+			if (distance <= radius) {
+				nearbyUsers.add(new NearbyUser(indexedUser.user, indexedUser.location, distance));
+			}
+		});
+		nearbyUsers.sort(Comparator.comparingDouble(NearbyUser::distance));
+		return nearbyUsers;
+	}
+
+	/**
+	 * Searches rings of growing radius until the k nearest users are known.
+	 *
+	 * @param location The centre of the search.
+	 * @param k        The number of users to return.
+	 * @return The k users whose latest location is the nearest, nearest first.
+	 */
+	public List<NearbyUser> findNearest(Location location, int k) {
+		double radius = CELL_DEGREES * MILES_PER_DEGREE_OF_LATITUDE;
+		while (true) {
+			List<NearbyUser> nearbyUsers = findWithin(location, radius);
+			// No two points on Earth are further apart than half a meridian
+			boolean wholeWorld = radius >= MILES_PER_DEGREE_OF_LATITUDE * 180;
+			if (nearbyUsers.size() >= k || wholeWorld) {
+				return nearbyUsers.subList(0, Math.min(k, nearbyUsers.size()));
+			}
+			radius *= 4;
+		}
+	}
+
+	private void forEachCandidate(Location location, double radius, Consumer<IndexedUser> action) {
+		double latitudeSpan = radius / MILES_PER_DEGREE_OF_LATITUDE;
+		double minLatitude = location.latitude - latitudeSpan;
+		double maxLatitude = location.latitude + latitudeSpan;
+		double cosLatitude = Math.cos(Math.toRadians(Math.max(Math.abs(minLatitude), Math.abs(maxLatitude))));
+		double longitudeSpan = minLatitude <= -90 || maxLatitude >= 90 || cosLatitude <= 0
+				? 180
+				: Math.min(180, latitudeSpan / cosLatitude);
+
+		int minLatitudeCell = latitudeCell(minLatitude);
+		int maxLatitudeCell = latitudeCell(maxLatitude);
+		int longitudeCells = longitudeSpan >= 180
+				? LONGITUDE_CELLS
+				: Math.min(LONGITUDE_CELLS, (int) Math.ceil(2 * longitudeSpan / CELL_DEGREES) + 1);
+		long visitedCells = (long) (maxLatitudeCell - minLatitudeCell + 1) * longitudeCells;
+
+		if (visitedCells > MAX_VISITED_CELLS) {
+			users.values().forEach(action);
+			return;
+		}
+		int minLongitudeCell = longitudeCell(location.longitude - longitudeSpan);
+		for (int latitudeCell = minLatitudeCell; latitudeCell <= maxLatitudeCell; latitudeCell++) {
+			for (int i = 0; i < longitudeCells; i++) {
+				Map<UUID, IndexedUser> bucket = cells.get(cellKey(latitudeCell, (minLongitudeCell + i) % LONGITUDE_CELLS));
+				if (bucket != null) {
+					bucket.values().forEach(action);
+				}
+			}
+		}
+	}
+
+	private static long cellOf(double latitude, double longitude) {
+		return cellKey(latitudeCell(latitude), longitudeCell(longitude));
+	}
+
+	private static long cellKey(int latitudeCell, int longitudeCell) {
+		return ((long) latitudeCell << 32) | longitudeCell;
+	}
+
+	private static int latitudeCell(double latitude) {
+		return Math.max(0, Math.min(LATITUDE_CELLS - 1, (int) Math.floor((latitude + 90) / CELL_DEGREES)));
+	}
+
+	private static int longitudeCell(double longitude) {
+		int cell = (int) Math.floor((longitude + 180) / CELL_DEGREES) % LONGITUDE_CELLS;
+		return cell < 0 ? cell + LONGITUDE_CELLS : cell;
+	}
+
+	private record IndexedUser(User user, Location location, long cell) {
+	}
+
+	/**
+	 * A user found by a spatial query, with their latest location and its distance to the searched location.
+	 */
+	public record NearbyUser(User user, Location location, double distance) {
+	}
+}
@@ -0,0 +1,52 @@
+package com.openclassrooms.tourguide.service;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Evaluates the distances several attractions at a time with the incubating Vector API.
+ * Only loaded by {@link DistanceKernel#best()} when the {@code jdk.incubator.vector} module is present.
+ */
+public class VectorDistanceKernel implements DistanceKernel {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	private static final double MILES_PER_RADIAN = STATUTE_MILES_PER_NAUTICAL_MILE * 60 * Math.toDegrees(1);
+
+	private final ScalarDistanceKernel scalarKernel = new ScalarDistanceKernel();
+
+	@Override
+	public void distances(double latitude, double longitude, AttractionCatalog catalog, double[] distances) {
+		int size = catalog.size();
+		int upperBound = SPECIES.loopBound(size);
+		if (upperBound == 0) {
+			scalarKernel.distances(latitude, longitude, catalog, distances);
+			return;
+		}
+
+		double lat1 = Math.toRadians(latitude);
+		double lon1 = Math.toRadians(longitude);
+		double sinLat1 = Math.sin(lat1);
+		double cosLat1 = Math.cos(lat1);
+		double[] sinLatitudes = catalog.getSinLatitudes();
+		double[] cosLatitudes = catalog.getCosLatitudes();
+		double[] longitudes = catalog.getLongitudes();
+
+		int i = 0;
+		for (; i < upperBound; i += SPECIES.length()) {
+			DoubleVector cosDeltaLongitude = DoubleVector.broadcast(SPECIES, lon1)
+					.sub(DoubleVector.fromArray(SPECIES, longitudes, i))
+					.lanewise(VectorOperators.COS);
+			DoubleVector cosAngle = DoubleVector.fromArray(SPECIES, sinLatitudes, i).mul(sinLat1)
+					.add(DoubleVector.fromArray(SPECIES, cosLatitudes, i).mul(cosLat1).mul(cosDeltaLongitude));
+			cosAngle.lanewise(VectorOperators.ACOS)
+					.mul(MILES_PER_RADIAN)
+					.intoArray(distances, i);
+		}
+		// Tail of the arrays, shorter than a vector
+		for (; i < size; i++) {
+			double angle = Math.acos(sinLat1 * sinLatitudes[i]
+					+ cosLat1 * cosLatitudes[i] * Math.cos(lon1 - longitudes[i]));
+			distances[i] = MILES_PER_RADIAN * angle;
+		}
+	}
+}
@@ -1,28 +1,111 @@
 package com.openclassrooms.tourguide.tracker;
 
+import com.openclassrooms.tourguide.monitoring.TrackerBatchEvent;
+import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.tracker.TrackingScheduler.ScheduledUser;
 import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.event.Level;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 public class Tracker extends Thread {
 	private final Logger logger = LoggerFactory.getLogger(Tracker.class);
-	private static final long TRACKING_POLLING_INTERVAL = TimeUnit.MINUTES.toSeconds(5);
+	private static final int MAX_BATCH_SIZE = 1000;
+	// Interactive requests are given way between chunks of this many users
+	private static final int YIELD_CHUNK_SIZE = 100;
+	private static final long YIELD_PAUSE_MILLIS = 100;
+	private static final long MAX_YIELD_MILLIS = TimeUnit.SECONDS.toMillis(5);
+	private static final long CHECKPOINT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
 	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
 	private final TourGuideService tourGuideService;
+	private final TrackingScheduler scheduler;
+	private final int callBudgetPerMinute;
+	private final Path checkpointFile;
+	private long lastCheckpoint;
+	private volatile BooleanSupplier yieldCondition = () -> false;
 	private boolean stop = false;
 
-	public Tracker(TourGuideService tourGuideService) {
+	public Tracker(TourGuideService tourGuideService, RewardsService rewardsService) {
+		this(tourGuideService, rewardsService, TrackingScheduler.DEFAULT_CALL_BUDGET_PER_MINUTE, null);
+	}
+
+	public Tracker(TourGuideService tourGuideService, RewardsService rewardsService, Path checkpointFile) {
+		this(tourGuideService, rewardsService, TrackingScheduler.DEFAULT_CALL_BUDGET_PER_MINUTE, checkpointFile);
+	}
+
+	public Tracker(TourGuideService tourGuideService, RewardsService rewardsService, Path checkpointFile, boolean startTracking) {
+		this(tourGuideService, rewardsService, TrackingScheduler.DEFAULT_CALL_BUDGET_PER_MINUTE, checkpointFile, startTracking);
+	}
+
+	public Tracker(TourGuideService tourGuideService, RewardsService rewardsService, int callBudgetPerMinute, Path checkpointFile) {
+		this(tourGuideService, rewardsService, callBudgetPerMinute, checkpointFile, true);
+	}
+
+	/**
+	 * @param checkpointFile The file the schedule is restored from and saved to, see {@link #restoreCheckpoint()},
+	 *                       or null to start from scratch
+	 * @param startTracking  Whether to start tracking, a tracker that is not started never calls gpsUtil
+	 *                       nor touches its checkpoint file
+	 */
+	public Tracker(TourGuideService tourGuideService, RewardsService rewardsService, int callBudgetPerMinute,
+				   Path checkpointFile, boolean startTracking) {
 		this.tourGuideService = tourGuideService;
+		this.scheduler = new TrackingScheduler(rewardsService, callBudgetPerMinute);
+		this.callBudgetPerMinute = callBudgetPerMinute;
+		this.checkpointFile = startTracking ? checkpointFile : null;
+		tourGuideService.getAllUsers().forEach(scheduler::schedule);
+		// Before tracking starts, otherwise the first batch would be taken from the schedule being restored
+		restoreCheckpoint();
 
-		executorService.submit(this);
+		if (startTracking) {
+			executorService.submit(this);
+		}
+	}
+
+	/**
+	 * Adds a user to the tracking schedule
+	 *
+	 * @param user The user to track
+	 */
+	public void track(User user) {
+		scheduler.schedule(user);
+	}
+
+	/**
+	 * Makes the tracker pause between batches while the condition holds,
+	 * so that interactive requests get the vendors first
+	 *
+	 * @param yieldCondition Whether the tracker should currently yield
+	 */
+	public void yieldWhile(BooleanSupplier yieldCondition) {
+		this.yieldCondition = yieldCondition;
+	}
+
+	/**
+	 * Restores the schedule saved in the checkpoint file, if any. The schedule is then saved to it regularly
+	 * and when tracking stops. Overdue users are caught up stalest first, spaced at half the call budget,
+	 * however long that takes, so that the other half is left to the users still within their interval.
+	 */
+	private void restoreCheckpoint() {
+		if (checkpointFile != null && Files.exists(checkpointFile)) {
+			try {
+				int overdue = scheduler.restoreCheckpoint(checkpointFile, callBudgetPerMinute / 2);
+				logger.info("Restored the schedule from {}, catching up {} overdue users", checkpointFile, overdue);
+			} catch (IOException | RuntimeException e) {
+				logger.warn("Could not restore the tracker checkpoint {}, starting from scratch", checkpointFile, e);
+			}
+		}
+		this.lastCheckpoint = System.currentTimeMillis();
 	}
 
 	/**
@@ -31,8 +114,14 @@ public class Tracker extends Thread {
 	public void stopTracking() {
 		stop = true;
 		executorService.shutdownNow();
+		writeCheckpoint();
 	}
 
+	/**
+	 * Tracks users as they become due instead of sweeping all of them every interval.
+	 * The scheduler hands out due users in batches, within its call budget, and each tracked user
+	 * is put back in the schedule according to their latest movement.
+	 */
 	@Override
 	public void run() {
 		StopWatch stopWatch = new StopWatch();
@@ -42,21 +131,87 @@ public class Tracker extends Thread {
 				break;
 			}
 
-			List<User> users = tourGuideService.getAllUsers();
-			logger.debug("Begin Tracker. Tracking {} users.", users.size());
-			stopWatch.start();
-			users.forEach(tourGuideService::trackUserLocation);
-			stopWatch.stop();
-			logger.atLevel(Level.DEBUG)
-					.log("Tracker Time Elapsed: {}", TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
-			stopWatch.reset();
+			List<ScheduledUser> dueUsers;
 			try {
-				logger.debug("Tracker sleeping");
-				TimeUnit.SECONDS.sleep(TRACKING_POLLING_INTERVAL);
+				yieldToInteractiveRequests();
+				dueUsers = scheduler.takeDueUsers(MAX_BATCH_SIZE);
 			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
 				break;
 			}
+
+			TrackerBatchEvent event = new TrackerBatchEvent();
+			event.begin();
+			stopWatch.start();
+			int tracked = 0;
+			try {
+				for (int from = 0; from < dueUsers.size(); from = tracked) {
+					// Also within a batch, so that a long batch does not hold the vendors from interactive requests
+					if (from > 0) {
+						yieldToInteractiveRequests();
+					}
+					tracked = Math.min(from + YIELD_CHUNK_SIZE, dueUsers.size());
+					track(dueUsers.subList(from, tracked));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				scheduler.putBack(dueUsers.subList(tracked, dueUsers.size()));
+			}
+			stopWatch.stop();
+			event.end();
+			if (event.shouldCommit()) {
+				event.users = dueUsers.size();
+				event.scheduledUsers = scheduler.size();
+				event.commit();
+			}
+			logger.debug("Tracked {} due users in {} ms, {} users scheduled.",
+					dueUsers.size(), stopWatch.getTime(), scheduler.size());
+			stopWatch.reset();
+
+			if (System.currentTimeMillis() - lastCheckpoint >= CHECKPOINT_INTERVAL_MILLIS) {
+				writeCheckpoint();
+			}
 		}
 
 	}
+
+	private void track(List<ScheduledUser> users) {
+		try {
+			tourGuideService.trackMultipleUserLocations(users.stream().map(ScheduledUser::getUser).toList());
+		} catch (RuntimeException e) {
+			logger.warn("Tracking a batch of {} users failed, they are tracked again at their next interval",
+					users.size(), e);
+		} finally {
+			// Users taken from the schedule must always be put back, scheduling them again has no effect
+			users.forEach(scheduler::reschedule);
+		}
+	}
+
+	private synchronized void writeCheckpoint() {
+		Path file = checkpointFile;
+		if (file == null) {
+			return;
+		}
+		try {
+			scheduler.writeCheckpoint(file);
+		} catch (IOException e) {
+			logger.warn("Could not write the tracker checkpoint {}", file, e);
+		}
+		lastCheckpoint = System.currentTimeMillis();
+	}
+
+	/**
+	 * Pauses while the yield condition holds, for at most {@link #MAX_YIELD_MILLIS}
+	 * so that tracking is slowed down but never starved.
+	 */
+	private void yieldToInteractiveRequests() throws InterruptedException {
+		long yielded = 0;
+		while (yieldCondition.getAsBoolean() && yielded < MAX_YIELD_MILLIS) {
+			TimeUnit.MILLISECONDS.sleep(YIELD_PAUSE_MILLIS);
+			yielded += YIELD_PAUSE_MILLIS;
+		}
+		if (yielded > 0) {
+			logger.debug("Tracker yielded {} ms to interactive requests", yielded);
+		}
+	}
 }
@@ -0,0 +1,69 @@
+package com.openclassrooms.tourguide.tracker;
+
+import com.openclassrooms.tourguide.tracker.TrackingScheduler.ScheduledUser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the tracking schedule to a local file, one line per user with the time
+ * they were last tracked and the time they are due, so that a restarted tracker does not start over.
+ * Users are identified by their user name, which survives restarts.
+ */
+final class TrackerCheckpoint {
+	private static final String HEADER = "# userName\tlastTrackedAt\tdueAt";
+
+	record Entry(long lastTrackedAt, long dueAt) {
+	}
+
+	private TrackerCheckpoint() {
+	}
+
+	static Map<String, Entry> read(Path file) throws IOException {
+		Map<String, Entry> entries = new HashMap<>();
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] fields = line.split("\t");
+				if (fields.length == 3) {
+					entries.put(fields[0], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+				}
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Writes the schedule to a temporary file, then moves it over the checkpoint,
+	 * so that a crash while writing leaves the previous checkpoint intact.
+	 */
+	static void write(Path file, List<ScheduledUser> scheduledUsers) throws IOException {
+		Path directory = file.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path temporaryFile = directory.resolve(file.getFileName() + ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+			writer.write(HEADER);
+			writer.newLine();
+			for (ScheduledUser scheduledUser : scheduledUsers) {
+				writer.write(scheduledUser.getUser().getUserName());
+				writer.write('\t');
+				writer.write(Long.toString(scheduledUser.getLastTrackedAt()));
+				writer.write('\t');
+				writer.write(Long.toString(scheduledUser.getDueAt()));
+				writer.newLine();
+			}
+		}
+		Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
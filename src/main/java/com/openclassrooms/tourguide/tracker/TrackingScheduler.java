@@ -0,0 +1,287 @@
+package com.openclassrooms.tourguide.tracker;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.service.RewardsService;
+import gpsUtil.location.VisitedLocation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when each user is due for their next location poll.
+ * <p>
+ * Users sit in a delay queue ordered by due time, so the most overdue users are tracked first
+ * and the tracker only wakes up when somebody is actually due. The interval until the next poll
+ * depends on how fast the user moved since the previous fix and how far they are from an attraction
+ * they can still be rewarded for. Stationary users back off exponentially up to the maximum interval,
+ * which is where users who stopped moving settle. The total number of polls is capped by a per-minute call budget.
+ */
+public class TrackingScheduler {
+	static final long MIN_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+	static final long DEFAULT_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+	static final long MAX_INTERVAL = TimeUnit.MINUTES.toMillis(30);
+	// gpsUtil is rate limited to 60,000 calls per minute, keep half of it for interactive requests
+	static final int DEFAULT_CALL_BUDGET_PER_MINUTE = 30_000;
+	private static final double STATIONARY_SPEED_MPH = 0.5;
+	private static final double MILLIS_PER_HOUR = TimeUnit.HOURS.toMillis(1);
+
+	private final DelayQueue<ScheduledUser> queue = new DelayQueue<>();
+	private final Map<UUID, ScheduledUser> scheduledUsers = new ConcurrentHashMap<>();
+	private final RewardsService rewardsService;
+	private final CallBudget callBudget;
+
+	public TrackingScheduler(RewardsService rewardsService, int callBudgetPerMinute) {
+		this.rewardsService = rewardsService;
+		this.callBudget = new CallBudget(callBudgetPerMinute);
+	}
+
+	/**
+	 * Adds a user to the schedule. Users with the oldest location fix are due first,
+	 * users without any location are due immediately.
+	 * Scheduling an already scheduled user has no effect.
+	 *
+	 * @param user The user to schedule.
+	 */
+	public void schedule(User user) {
+		Date latest = user.getLatestLocationTimestamp();
+		long now = System.currentTimeMillis();
+		long dueAt = latest == null ? 0 : Math.min(now, latest.getTime() + DEFAULT_INTERVAL);
+
+		ScheduledUser scheduledUser = new ScheduledUser(user, dueAt);
+		if (scheduledUsers.putIfAbsent(user.getUserId(), scheduledUser) == null) {
+			queue.add(scheduledUser);
+		}
+	}
+
+	/**
+	 * Waits until at least one user is due, then returns as many due users as the call budget allows.
+	 *
+	 * @param maxBatchSize The maximum number of users to return.
+	 * @return The due users, most overdue first.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	public List<ScheduledUser> takeDueUsers(int maxBatchSize) throws InterruptedException {
+		List<ScheduledUser> due = new ArrayList<>();
+		due.add(queue.take());
+		queue.drainTo(due, maxBatchSize - 1);
+
+		int granted = callBudget.acquireUpTo(due.size());
+		if (granted < due.size()) {
+			List<ScheduledUser> deferred = due.subList(granted, due.size());
+			putBack(deferred);
+			deferred.clear();
+		}
+		return due;
+	}
+
+	/**
+	 * Puts users taken from the queue back without tracking them, they keep their due time.
+	 *
+	 * @param scheduledUsers The users that were not tracked.
+	 */
+	public void putBack(List<ScheduledUser> scheduledUsers) {
+		queue.addAll(scheduledUsers);
+	}
+
+	/**
+	 * Puts a tracked user back in the queue, due after an interval based on their latest movement.
+	 *
+	 * @param scheduledUser The user that has just been tracked.
+	 */
+	public void reschedule(ScheduledUser scheduledUser) {
+		long now = System.currentTimeMillis();
+		scheduledUser.lastTrackedAt = now;
+		scheduledUser.dueAt = now + nextInterval(scheduledUser);
+		queue.add(scheduledUser);
+	}
+
+	public int size() {
+		return queue.size();
+	}
+
+	/**
+	 * @return Every scheduled user, including those being tracked.
+	 */
+	public List<ScheduledUser> getScheduledUsers() {
+		return List.copyOf(scheduledUsers.values());
+	}
+
+	/**
+	 * Saves the schedule, see {@link #restoreCheckpoint(Path, int)}.
+	 *
+	 * @param checkpointFile The file to write.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void writeCheckpoint(Path checkpointFile) throws IOException {
+		TrackerCheckpoint.write(checkpointFile, getScheduledUsers());
+	}
+
+	/**
+	 * Restores the schedule saved before a restart. Users still within their interval keep their due time.
+	 * Overdue users are caught up stalest first, spaced at the catch-up rate, so the catch-up takes as long as
+	 * the rate requires: at 15,000 calls per minute, 1,000,000 overdue users are all due after about 67 minutes.
+	 * Users being tracked or missing from the checkpoint keep their current schedule.
+	 * The queue is rebuilt in one pass, so this must be called before tracking starts.
+	 *
+	 * @param checkpointFile        The file written by {@link #writeCheckpoint(Path)}.
+	 * @param catchUpCallsPerMinute The pace of the catch-up.
+	 * @return The number of overdue users to catch up.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public int restoreCheckpoint(Path checkpointFile, int catchUpCallsPerMinute) throws IOException {
+		Map<String, TrackerCheckpoint.Entry> checkpoint = TrackerCheckpoint.read(checkpointFile);
+		long now = System.currentTimeMillis();
+		List<ScheduledUser> restored = new ArrayList<>(queue.size());
+		List<ScheduledUser> overdue = new ArrayList<>();
+		for (ScheduledUser scheduledUser : queue) {
+			TrackerCheckpoint.Entry entry = checkpoint.get(scheduledUser.user.getUserName());
+			if (entry == null) {
+				restored.add(scheduledUser);
+				continue;
+			}
+			scheduledUser.lastTrackedAt = entry.lastTrackedAt();
+			scheduledUser.dueAt = entry.dueAt();
+			if (entry.dueAt() > now) {
+				restored.add(scheduledUser);
+			} else {
+				overdue.add(scheduledUser);
+			}
+		}
+
+		overdue.sort(Comparator.comparingLong(ScheduledUser::getDueAt));
+		double spacing = TimeUnit.MINUTES.toMillis(1) / (double) catchUpCallsPerMinute;
+		for (int i = 0; i < overdue.size(); i++) {
+			overdue.get(i).dueAt = now + (long) (i * spacing);
+		}
+		restored.addAll(overdue);
+		// Due times changed in place, the queue order must be rebuilt
+		queue.clear();
+		queue.addAll(restored);
+		return overdue.size();
+	}
+
+	/**
+	 * Computes the delay before the next poll of a user, from their two latest fixes:
+	 * <ul>
+	 *     <li>stationary users double their interval on each stationary poll, 10, 20, then 30 minutes</li>
+	 *     <li>moving users are polled twice before they could reach the reward radius of an attraction,
+	 *     but never more often than the minimum interval nor less often than the default one</li>
+	 * </ul>
+	 */
+	long nextInterval(ScheduledUser scheduledUser) {
+		User user = scheduledUser.user;
+		// Under the user's lock, the history may be trimmed concurrently
+		List<VisitedLocation> latestFixes = rewardsService.getUserLocks().withLock(user, () -> {
+			List<VisitedLocation> visitedLocations = user.getVisitedLocations();
+			int size = visitedLocations.size();
+			return size < 2 ? List.<VisitedLocation>of() : List.of(visitedLocations.get(size - 2), visitedLocations.get(size - 1));
+		});
+		if (latestFixes.isEmpty()) {
+			return DEFAULT_INTERVAL;
+		}
+
+		VisitedLocation previous = latestFixes.get(0);
+		VisitedLocation last = latestFixes.get(1);
+		double hours = (last.timeVisited.getTime() - previous.timeVisited.getTime()) / MILLIS_PER_HOUR;
+		double speed = hours > 0 ? rewardsService.getDistance(previous.location, last.location) / hours : 0;
+		if (speed < STATIONARY_SPEED_MPH) {
+			long backoff = DEFAULT_INTERVAL << Math.min(++scheduledUser.stationaryPolls, 3);
+			return Math.min(MAX_INTERVAL, backoff);
+		}
+		scheduledUser.stationaryPolls = 0;
+
+		double distanceToReward = rewardsService.getDistanceToNearestReward(user);
+		if (Double.isInfinite(distanceToReward)) {
+			return DEFAULT_INTERVAL;
+		}
+		long timeToReward = (long) (distanceToReward / speed * MILLIS_PER_HOUR);
+		return Math.max(MIN_INTERVAL, Math.min(DEFAULT_INTERVAL, timeToReward / 2));
+	}
+
+	/**
+	 * A user waiting in the schedule, with the time at which they are due.
+	 */
+	public static class ScheduledUser implements Delayed {
+		private final User user;
+		private volatile long dueAt;
+		private volatile long lastTrackedAt;
+		private int stationaryPolls;
+
+		ScheduledUser(User user, long dueAt) {
+			this.user = user;
+			this.dueAt = dueAt;
+		}
+
+		public User getUser() {
+			return user;
+		}
+
+		public long getDueAt() {
+			return dueAt;
+		}
+
+		/**
+		 * @return When the user was last tracked, 0 if never.
+		 */
+		public long getLastTrackedAt() {
+			return lastTrackedAt;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(dueAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			return Long.compare(dueAt, ((ScheduledUser) other).dueAt);
+		}
+	}
+
+	/**
+	 * Token bucket refilled continuously at the configured number of calls per minute.
+	 */
+	static class CallBudget {
+		private final double permitsPerMilli;
+		private final double capacity;
+		private double available;
+		private long lastRefill;
+
+		CallBudget(int callsPerMinute) {
+			this.permitsPerMilli = callsPerMinute / (double) TimeUnit.MINUTES.toMillis(1);
+			this.capacity = callsPerMinute;
+			this.available = callsPerMinute;
+			this.lastRefill = System.currentTimeMillis();
+		}
+
+		/**
+		 * Blocks until at least one call is available, then takes as many as possible up to the requested number.
+		 */
+		synchronized int acquireUpTo(int requested) throws InterruptedException {
+			refill();
+			while (available < 1) {
+				TimeUnit.MILLISECONDS.sleep((long) Math.ceil((1 - available) / permitsPerMilli));
+				refill();
+			}
+			int granted = (int) Math.min(requested, available);
+			available -= granted;
+			return granted;
+		}
+
+		private void refill() {
+			long now = System.currentTimeMillis();
+			available = Math.min(capacity, available + (now - lastRefill) * permitsPerMilli);
+			lastRefill = now;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package com.openclassrooms.tourguide.web;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Admission control of the interactive endpoints.
+ * <p>
+ * Each endpoint calling a vendor or doing heavy work has its own concurrency limit, so a slow vendor behind one
+ * endpoint cannot hold every Tomcat thread, and the other endpoints share a default limit. When an endpoint is
+ * saturated, requests are answered right away with a 503 and a Retry-After header instead of piling up.
+ * Admitted and shed requests are counted per endpoint in the {@code tourguide.admission.requests} metric.
+ * <p>
+ * Not under admission control: {@code /subscribe}, whose streams last for minutes and are capped by the
+ * {@link com.openclassrooms.tourguide.service.UserEventHub}, the actuator, and the error page.
+ */
+@Component
+public class AdmissionControlInterceptor implements HandlerInterceptor {
+	private static final Logger logger = LoggerFactory.getLogger(AdmissionControlInterceptor.class);
+	private static final String LIMITER_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".limiter";
+	private static final long MAX_WAIT_MILLIS = 200;
+	private static final String RETRY_AFTER_SECONDS = "1";
+	private static final String DEFAULT_ENDPOINT = "other";
+	private static final Set<String> EXCLUDED_PATHS = Set.of("/subscribe", "/error");
+	private static final String ACTUATOR_PATH = "/actuator/";
+
+	private final Map<String, EndpointLimiter> limiters;
+	private final EndpointLimiter defaultLimiter;
+
+	public AdmissionControlInterceptor(MeterRegistry meterRegistry) {
+		// Endpoints calling a vendor get the lowest limits, the queue holds as many requests as the limit
+		this.limiters = Map.of(
+				"/getLocation", new EndpointLimiter("/getLocation", 50, 50, MAX_WAIT_MILLIS, meterRegistry),
+				"/getNearbyAttractions", new EndpointLimiter("/getNearbyAttractions", 20, 20, MAX_WAIT_MILLIS, meterRegistry),
+				"/getRewards", new EndpointLimiter("/getRewards", 100, 100, MAX_WAIT_MILLIS, meterRegistry),
+				"/getTripDeals", new EndpointLimiter("/getTripDeals", 20, 20, MAX_WAIT_MILLIS, meterRegistry),
+				"/setAttractionProximity", new EndpointLimiter("/setAttractionProximity", 10, 10, MAX_WAIT_MILLIS, meterRegistry),
+				// Streams every user, a couple at a time is plenty
+				"/exportUsers", new EndpointLimiter("/exportUsers", 2, 2, MAX_WAIT_MILLIS, meterRegistry),
+				"/getUsersNearAttraction", new EndpointLimiter("/getUsersNearAttraction", 50, 50, MAX_WAIT_MILLIS, meterRegistry),
+				"/getNearestUsers", new EndpointLimiter("/getNearestUsers", 50, 50, MAX_WAIT_MILLIS, meterRegistry),
+				"/getHotAttractions", new EndpointLimiter("/getHotAttractions", 50, 50, MAX_WAIT_MILLIS, meterRegistry)
+		);
+		// The reward job endpoints and any endpoint added later
+		this.defaultLimiter = new EndpointLimiter(DEFAULT_ENDPOINT, 100, 100, MAX_WAIT_MILLIS, meterRegistry);
+	}
+
+	/**
+	 * @param path The servlet path of a request
+	 * @return The limiter the request goes through, or null if the path is not under admission control
+	 */
+	public EndpointLimiter limiterFor(String path) {
+		if (EXCLUDED_PATHS.contains(path) || path.startsWith(ACTUATOR_PATH)) {
+			return null;
+		}
+		return limiters.getOrDefault(path, defaultLimiter);
+	}
+
+	/**
+	 * @return Whether interactive requests are currently queueing, in which case background work should yield.
+	 */
+	public boolean isSaturated() {
+		return defaultLimiter.isQueueing() || limiters.values().stream().anyMatch(EndpointLimiter::isQueueing);
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws InterruptedException {
+		EndpointLimiter limiter = limiterFor(request.getServletPath());
+		// Async dispatches of a streamed response were admitted with their initial request
+		if (limiter == null || request.getAttribute(LIMITER_ATTRIBUTE) != null) {
+			return true;
+		}
+		if (limiter.tryAdmit()) {
+			request.setAttribute(LIMITER_ATTRIBUTE, limiter);
+			return true;
+		}
+
+		logger.debug("Shedding request to {}", request.getServletPath());
+		response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+		return false;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+		EndpointLimiter limiter = (EndpointLimiter) request.getAttribute(LIMITER_ATTRIBUTE);
+		if (limiter != null) {
+			request.setAttribute(LIMITER_ATTRIBUTE, null);
+			limiter.release();
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.openclassrooms.tourguide.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of concurrent requests on an endpoint.
+ * Requests beyond the limit wait in a short queue; once the queue is full,
+ * or when a request waited too long, the request is shed.
+ */
+public class EndpointLimiter {
+	private final Semaphore permits;
+	private final int maxQueued;
+	private final long maxWaitMillis;
+	private final AtomicInteger queued = new AtomicInteger();
+	private final Counter admitted;
+	private final Counter shed;
+
+	public EndpointLimiter(String endpoint, int maxConcurrent, int maxQueued, long maxWaitMillis, MeterRegistry meterRegistry) {
+		this.permits = new Semaphore(maxConcurrent);
+		this.maxQueued = maxQueued;
+		this.maxWaitMillis = maxWaitMillis;
+		this.admitted = meterRegistry.counter("tourguide.admission.requests", "endpoint", endpoint, "outcome", "admitted");
+		this.shed = meterRegistry.counter("tourguide.admission.requests", "endpoint", endpoint, "outcome", "shed");
+		meterRegistry.gauge("tourguide.admission.queued", Tags.of("endpoint", endpoint), queued);
+	}
+
+	/**
+	 * Tries to admit a request, waiting for a slot when the queue is not full.
+	 * An admitted request must be followed by a call to {@link #release()}.
+	 *
+	 * @return Whether the request is admitted.
+	 * @throws InterruptedException If interrupted while waiting for a slot.
+	 */
+	public boolean tryAdmit() throws InterruptedException {
+		if (permits.tryAcquire()) {
+			admitted.increment();
+			return true;
+		}
+		if (queued.incrementAndGet() > maxQueued) {
+			queued.decrementAndGet();
+			shed.increment();
+			return false;
+		}
+		try {
+			if (permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+				admitted.increment();
+				return true;
+			}
+			shed.increment();
+			return false;
+		} finally {
+			queued.decrementAndGet();
+		}
+	}
+
+	public void release() {
+		permits.release();
+	}
+
+	/**
+	 * @return Whether requests are waiting for a slot, meaning the endpoint is saturated.
+	 */
+	public boolean isQueueing() {
+		return queued.get() > 0;
+	}
+}
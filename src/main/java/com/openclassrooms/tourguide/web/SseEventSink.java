@@ -0,0 +1,28 @@
+package com.openclassrooms.tourguide.web;
+
+import com.openclassrooms.tourguide.service.UserEventHub;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+/**
+ * Writes the events of a user subscription as server-sent events.
+ */
+public class SseEventSink implements UserEventHub.EventSink {
+
+	private final SseEmitter emitter;
+
+	public SseEventSink(SseEmitter emitter) {
+		this.emitter = emitter;
+	}
+
+	@Override
+	public void send(String event, Object data) throws IOException {
+		emitter.send(SseEmitter.event().name(event).data(data));
+	}
+
+	@Override
+	public void close() {
+		emitter.complete();
+	}
+}
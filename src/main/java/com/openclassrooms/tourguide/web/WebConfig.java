@@ -0,0 +1,25 @@
+package com.openclassrooms.tourguide.web;
+
+import com.openclassrooms.tourguide.service.TourGuideService;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+	private final AdmissionControlInterceptor admissionControlInterceptor;
+
+	public WebConfig(AdmissionControlInterceptor admissionControlInterceptor, TourGuideService tourGuideService) {
+		this.admissionControlInterceptor = admissionControlInterceptor;
+		// Interactive requests have priority over the background tracker
+		tourGuideService.tracker.yieldWhile(admissionControlInterceptor::isSaturated);
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		// The interceptor leaves out the paths it does not control
+		registry.addInterceptor(admissionControlInterceptor)
+				.addPathPatterns("/**");
+	}
+}
@@ -0,0 +1,62 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.web.AdmissionControlInterceptor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestAdmissionControlInterceptor {
+
+	private static MockHttpServletRequest request(String path) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+		request.setServletPath(path);
+		return request;
+	}
+
+	@Test
+	void everyInteractivePathIsControlled() {
+		AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(new SimpleMeterRegistry());
+
+		assertNotNull(interceptor.limiterFor("/exportUsers"));
+		assertNotNull(interceptor.limiterFor("/getNearestUsers"));
+		assertNotSame(interceptor.limiterFor("/exportUsers"), interceptor.limiterFor("/getNearestUsers"));
+		// Unlisted endpoints share the default limit
+		assertNotNull(interceptor.limiterFor("/startRewardJob"));
+		assertSame(interceptor.limiterFor("/startRewardJob"), interceptor.limiterFor("/someFutureEndpoint"));
+	}
+
+	@Test
+	void streamsActuatorAndErrorsAreNotControlled() {
+		AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(new SimpleMeterRegistry());
+
+		assertNull(interceptor.limiterFor("/subscribe"));
+		assertNull(interceptor.limiterFor("/actuator/flightrecording"));
+		assertNull(interceptor.limiterFor("/error"));
+	}
+
+	@Test
+	void asyncDispatchReusesItsAdmission() throws Exception {
+		AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(new SimpleMeterRegistry());
+		// /exportUsers admits 2 requests and queues 2
+		MockHttpServletRequest export = request("/exportUsers");
+		assertTrue(interceptor.preHandle(export, new MockHttpServletResponse(), null));
+		assertTrue(interceptor.preHandle(request("/exportUsers"), new MockHttpServletResponse(), null));
+
+		// The streamed response of the first export is dispatched again, without taking another slot
+		assertTrue(interceptor.preHandle(export, new MockHttpServletResponse(), null));
+		interceptor.afterCompletion(export, new MockHttpServletResponse(), null, null);
+
+		// Its slot is free again
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertTrue(interceptor.preHandle(request("/exportUsers"), response, null));
+		assertEquals(200, response.getStatus());
+	}
+}
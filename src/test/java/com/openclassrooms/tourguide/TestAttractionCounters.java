@@ -0,0 +1,103 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.service.AttractionCatalog;
+import com.openclassrooms.tourguide.service.AttractionCounters;
+import com.openclassrooms.tourguide.service.AttractionCounters.HotAttraction;
+import com.openclassrooms.tourguide.service.RewardsService;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TestAttractionCounters {
+
+	private final List<Attraction> attractions = List.of(
+			new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008),
+			new Attraction("Jackson Hole", "Jackson Hole", "WY", 43.582767, -110.821999),
+			new Attraction("Mojave National Preserve", "Kelso", "CA", 35.141689, -115.510399));
+
+	@Test
+	void recentRewardsRankFirst() {
+		AtomicLong clock = new AtomicLong(TimeUnit.HOURS.toMillis(1));
+		AttractionCounters counters = new AttractionCounters(new AttractionCatalog(1, attractions), null, clock::get);
+
+		for (int i = 0; i < 3; i++) {
+			counters.record(1, 0, 100);
+		}
+		clock.addAndGet(TimeUnit.MINUTES.toMillis(2));
+		counters.record(1, 1, 50);
+
+		List<HotAttraction> lastMinute = counters.getHotAttractions(1, 2);
+		assertEquals(2, lastMinute.size());
+		assertEquals("Jackson Hole", lastMinute.get(0).attraction().attractionName);
+		assertEquals(1L, lastMinute.get(0).windowRewards());
+		assertEquals("Disneyland", lastMinute.get(1).attraction().attractionName);
+		assertEquals(0L, lastMinute.get(1).windowRewards());
+		assertEquals(3L, lastMinute.get(1).totalRewards());
+		assertEquals(300L, lastMinute.get(1).totalRewardPoints());
+
+		List<HotAttraction> lastFiveMinutes = counters.getHotAttractions(5, 3);
+		assertEquals("Disneyland", lastFiveMinutes.get(0).attraction().attractionName);
+		assertEquals(3L, lastFiveMinutes.get(0).windowRewards());
+		assertEquals(0.6, lastFiveMinutes.get(0).rewardsPerMinute());
+	}
+
+	@Test
+	void bucketsAreReusedOnceOutOfTheWindow() {
+		AtomicLong clock = new AtomicLong(TimeUnit.HOURS.toMillis(1));
+		AttractionCounters counters = new AttractionCounters(new AttractionCatalog(1, attractions), null, clock::get);
+
+		counters.record(1, 2, 10);
+		// Far enough for the ring to wrap around onto the same bucket
+		clock.addAndGet(TimeUnit.SECONDS.toMillis(10) * (AttractionCounters.MAX_WINDOW_MINUTES * 6 + 1));
+		counters.record(1, 2, 10);
+
+		HotAttraction mojave = counters.getHotAttractions(AttractionCounters.MAX_WINDOW_MINUTES, 1).get(0);
+		assertEquals(1L, mojave.windowRewards());
+		assertEquals(2L, mojave.totalRewards());
+	}
+
+	@Test
+	void totalsSurviveACatalogRefresh() {
+		AttractionCounters counters = new AttractionCounters(new AttractionCatalog(1, attractions), null);
+		counters.record(1, 0, 100);
+
+		// The refreshed catalog lists the attractions in another order
+		AttractionCounters refreshed = new AttractionCounters(new AttractionCatalog(2,
+				List.of(attractions.get(2), attractions.get(1), attractions.get(0))), counters);
+		counters.record(1, 0, 100);
+		refreshed.record(1, 0, 100);
+
+		assertEquals(1L, refreshed.getRewards(2));
+		assertEquals(100L, refreshed.getRewardPoints(2));
+		assertEquals(0L, refreshed.getRewards(0));
+	}
+
+	@Test
+	void grantedRewardsAreCountedOnce() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		Attraction attraction = rewardsService.getAttractions().get(0);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+
+		rewardsService.calculateRewards(user);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+		rewardsService.calculateRewards(user);
+
+		AttractionCounters counters = rewardsService.getAttractionCounters();
+		assertEquals(1L, counters.getRewards(0));
+		assertEquals((long) user.getUserRewards().get(0).getRewardPoints(), counters.getRewardPoints(0));
+		assertEquals(attraction.attractionName, counters.getHotAttractions(1, 1).get(0).attraction().attractionName);
+	}
+}
@@ -0,0 +1,56 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.service.AttractionCatalog;
+import com.openclassrooms.tourguide.service.AttractionGrid;
+import com.openclassrooms.tourguide.service.RewardsService;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestAttractionGrid {
+
+	@Test
+	void candidatesContainAttractionsWithinRadius() {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		Random random = new Random(42);
+		List<Attraction> attractions = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			attractions.add(new Attraction("attraction" + i, "city", "state",
+					random.nextDouble() * 160 - 80, random.nextDouble() * 360 - 180));
+		}
+		AttractionGrid grid = new AttractionCatalog(1, attractions).getGrid();
+
+		for (int n = 0; n < 200; n++) {
+			Location location = new Location(random.nextDouble() * 160 - 80, random.nextDouble() * 360 - 180);
+			double radius = random.nextDouble() * 300;
+			int[] candidates = grid.candidates(location.latitude, location.longitude, radius);
+			if (candidates == null) {
+				continue;
+			}
+			for (int i = 0; i < attractions.size(); i++) {
+				int index = i;
+				if (rewardsService.getDistance(attractions.get(i), location) <= radius) {
+					assertTrue(Arrays.stream(candidates).anyMatch(c -> c == index));
+				}
+			}
+		}
+	}
+
+	@Test
+	void smallCatalogIsScanned() {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		AttractionGrid grid = rewardsService.getAttractionCatalog().getGrid();
+
+		assertNull(grid.candidates(33.817595, -117.922008, 10));
+	}
+}
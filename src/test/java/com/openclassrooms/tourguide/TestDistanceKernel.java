@@ -0,0 +1,47 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.service.AttractionCatalog;
+import com.openclassrooms.tourguide.service.DistanceKernel;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.ScalarDistanceKernel;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TestDistanceKernel {
+
+	@Test
+	void kernelsMatchGetDistance() {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		Random random = new Random(42);
+		// Odd size, so that the vector kernel also goes through its scalar tail
+		List<Attraction> attractions = new ArrayList<>();
+		for (int i = 0; i < 1001; i++) {
+			attractions.add(new Attraction("attraction" + i, "city", "state",
+					random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180));
+		}
+		AttractionCatalog catalog = new AttractionCatalog(1, attractions);
+		double[] scalarDistances = new double[catalog.size()];
+		double[] bestDistances = new double[catalog.size()];
+
+		for (int n = 0; n < 100; n++) {
+			Location location = new Location(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+			new ScalarDistanceKernel().distances(location.latitude, location.longitude, catalog, scalarDistances);
+			DistanceKernel.best().distances(location.latitude, location.longitude, catalog, bestDistances);
+
+			for (int i = 0; i < catalog.size(); i++) {
+				double expected = rewardsService.getDistance(attractions.get(i), location);
+				assertEquals(expected, scalarDistances[i], 1e-9);
+				assertEquals(expected, bestDistances[i], 1e-6);
+			}
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.web.EndpointLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestEndpointLimiter {
+
+	@Test
+	void shedRequestsBeyondLimit() throws InterruptedException {
+		EndpointLimiter limiter = new EndpointLimiter("/getLocation", 1, 0, 10, new SimpleMeterRegistry());
+
+		assertTrue(limiter.tryAdmit());
+		assertFalse(limiter.tryAdmit());
+
+		limiter.release();
+
+		assertTrue(limiter.tryAdmit());
+	}
+
+	@Test
+	void queuedRequestIsAdmittedOnRelease() throws InterruptedException {
+		EndpointLimiter limiter = new EndpointLimiter("/getLocation", 1, 1, 1000, new SimpleMeterRegistry());
+		assertTrue(limiter.tryAdmit());
+
+		Thread releaser = new Thread(() -> {
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			limiter.release();
+		});
+		releaser.start();
+
+		assertTrue(limiter.tryAdmit());
+		assertFalse(limiter.isQueueing());
+	}
+}
@@ -0,0 +1,78 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.monitoring.FlightRecordingEndpoint;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import gpsUtil.GpsUtil;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.core.io.Resource;
+import rewardCentral.RewardCentral;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestFlightRecordingEndpoint {
+
+	@Test
+	void recordingContainsTourGuideEvents() throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		FlightRecordingEndpoint endpoint = new FlightRecordingEndpoint();
+
+		assertEquals("RUNNING", endpoint.control("start", 60, 10).get("state"));
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		tourGuideService.trackUserLocation(user);
+		assertEquals("STOPPED", endpoint.control("stop", null, null).get("state"));
+
+		Resource dump = endpoint.dump("dump");
+		Path dumpFile = dump.getFile().toPath();
+		Path copy = Files.createTempFile("tourguide-test-", ".jfr");
+		try (InputStream in = dump.getInputStream()) {
+			Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+		}
+		// Deleted once the response is written
+		assertFalse(Files.exists(dumpFile));
+		List<RecordedEvent> events = RecordingFile.readAllEvents(copy);
+		Files.delete(copy);
+		Set<String> eventNames = events.stream()
+				.map(event -> event.getEventType().getName())
+				.collect(Collectors.toSet());
+
+		assertTrue(eventNames.contains("tourguide.UserTracked"));
+		assertTrue(eventNames.contains("tourguide.RewardsCalculated"));
+		assertTrue(eventNames.contains("tourguide.VendorCall"));
+		RecordedEvent userTracked = events.stream()
+				.filter(event -> event.getEventType().getName().equals("tourguide.UserTracked"))
+				.findFirst()
+				.orElseThrow();
+		assertEquals("jon", userTracked.getString("userName"));
+	}
+
+	@Test
+	void invalidBoundsAreRejected() {
+		FlightRecordingEndpoint endpoint = new FlightRecordingEndpoint();
+
+		assertThrows(InvalidEndpointRequestException.class, () -> endpoint.control("start", -1, null));
+		assertThrows(InvalidEndpointRequestException.class, () -> endpoint.control("start", null, 0));
+		assertEquals("NONE", endpoint.status().get("state"));
+	}
+}
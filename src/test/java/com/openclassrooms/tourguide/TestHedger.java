@@ -0,0 +1,89 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.service.Hedger;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestHedger {
+
+	@Test
+	void hedgeSlowCallsWithinBudget() {
+		Hedger hedger = new Hedger("slowVendor", 0.05);
+		AtomicInteger invocations = new AtomicInteger();
+		// One invocation out of 25 is stuck for a long time, the others answer quickly
+		Callable<Integer> vendor = () -> {
+			int invocation = invocations.incrementAndGet();
+			Thread.sleep(invocation % 25 == 0 ? 500 : 2);
+			return invocation;
+		};
+
+		// Warm up the latency statistics
+		for (int i = 0; i < 200; i++) {
+			hedger.call(vendor);
+		}
+		hedger.setEnabled(true);
+
+		for (int i = 0; i < 200; i++) {
+			hedger.call(vendor);
+		}
+
+		assertTrue(hedger.getHedges() > 0);
+		assertTrue(hedger.getHedgeWins() > 0);
+		assertTrue(hedger.getHedgeWins() <= hedger.getHedges());
+		assertTrue(hedger.getHedges() <= hedger.getCalls() * 0.05);
+	}
+
+	@Test
+	void hedgedCallReturnsVendorResult() {
+		GpsUtil gpsUtil = new GpsUtil();
+		Hedger hedger = new Hedger("gpsUtil.getUserLocation", Hedger.DEFAULT_BUDGET_RATIO);
+		hedger.setEnabled(true);
+		UUID userId = UUID.randomUUID();
+
+		for (int i = 0; i < 20; i++) {
+			VisitedLocation visitedLocation = hedger.call(() -> gpsUtil.getUserLocation(userId));
+			assertEquals(userId, visitedLocation.userId);
+		}
+		assertEquals(20, hedger.getCalls());
+	}
+
+	@Test
+	void winningHedgeCancelsThePrimaryCallNotTheCaller() throws InterruptedException {
+		Hedger hedger = new Hedger("vendor", 1);
+		// Warm up the latency statistics
+		for (int i = 0; i < 200; i++) {
+			hedger.call(() -> 0);
+		}
+		hedger.setEnabled(true);
+		CountDownLatch primaryCancelled = new CountDownLatch(1);
+		// The primary call is stuck until interrupted, the hedge, on the hedge pool, answers at once
+		Callable<String> vendor = () -> {
+			if (!Thread.currentThread().getName().equals("hedger-vendor")) {
+				try {
+					Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+				} catch (InterruptedException e) {
+					primaryCancelled.countDown();
+					throw e;
+				}
+			}
+			return "hedge";
+		};
+
+		assertEquals("hedge", hedger.call(vendor));
+		assertEquals(1L, hedger.getHedges());
+		assertEquals(1L, hedger.getHedgeWins());
+		assertFalse(Thread.currentThread().isInterrupted());
+		assertTrue(primaryCancelled.await(10, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,48 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.service.NearbyAttractionCache;
+import com.openclassrooms.tourguide.service.RewardsService;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestNearbyAttractionCache {
+
+	@Test
+	void candidatesContainNearestAttractions() {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		NearbyAttractionCache nearbyAttractionCache = new NearbyAttractionCache(rewardsService, 5);
+		List<Attraction> attractions = rewardsService.getAttractions();
+		Random random = new Random(42);
+
+		for (int i = 0; i < 2000; i++) {
+			// Half of the locations around the attractions, where cells are shared the most
+			Attraction around = attractions.get(random.nextInt(attractions.size()));
+			Location location = i % 2 == 0
+					? new Location(around.latitude + random.nextGaussian(), around.longitude + random.nextGaussian())
+					: new Location(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+
+			List<Attraction> candidates = nearbyAttractionCache.getCandidates(location).getAttractions();
+
+			assertTrue(candidates.size() >= 5);
+			assertEquals(nearest(rewardsService, attractions, location), nearest(rewardsService, candidates, location));
+		}
+	}
+
+	private List<String> nearest(RewardsService rewardsService, List<Attraction> attractions, Location location) {
+		return attractions.stream()
+				.sorted(Comparator.comparingDouble(attraction -> rewardsService.getDistance(attraction, location)))
+				.limit(5)
+				.map(attraction -> attraction.attractionName)
+				.toList();
+	}
+}
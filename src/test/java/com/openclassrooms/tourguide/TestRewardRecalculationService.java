@@ -0,0 +1,146 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardRecalculationJob;
+import com.openclassrooms.tourguide.service.RewardRecalculationJob.Status;
+import com.openclassrooms.tourguide.service.RewardRecalculationService;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import gpsUtil.GpsUtil;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestRewardRecalculationService {
+
+	/**
+	 * Answers without the vendor latency, so that only the throttle paces the jobs
+	 */
+	private static class InstantRewardCentral extends RewardCentral {
+		@Override
+		public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+			return 1;
+		}
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+	}
+
+	@Test
+	void jobRecalculatesEveryUser() throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(100);
+		// Without tracking, no reward is granted behind the jobs' back
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, null, false);
+		Path checkpointDirectory = Files.createTempDirectory("reward-jobs");
+
+		RewardRecalculationService service = new RewardRecalculationService(tourGuideService, rewardsService, checkpointDirectory.toString());
+		RewardRecalculationJob job = service.start(30, 1000);
+		await(() -> job.getStatus() == Status.COMPLETED);
+
+		assertEquals(Status.COMPLETED, job.getStatus());
+		assertEquals(100, job.getProcessedUsers());
+		assertTrue(job.getThroughput() > 0);
+		// Finished jobs leave no checkpoint behind
+		try (var checkpoints = Files.list(checkpointDirectory)) {
+			assertEquals(0, checkpoints.count());
+		}
+	}
+
+	@Test
+	void jobRewardsEarlierLocationsAfterProximityChange() throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(10);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, null, false);
+		List<User> users = tourGuideService.getAllUsers();
+		// Every location is evaluated at the default proximity
+		rewardsService.calculateMultipleUserRewards(users);
+		int rewardsBefore = users.stream().mapToInt(user -> user.getUserRewards().size()).sum();
+		rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+		Path checkpointDirectory = Files.createTempDirectory("reward-jobs");
+
+		RewardRecalculationService service = new RewardRecalculationService(tourGuideService, rewardsService, checkpointDirectory.toString());
+		RewardRecalculationJob job = service.start(3, 10000);
+		await(() -> job.getStatus() == Status.COMPLETED);
+
+		assertEquals(Status.COMPLETED, job.getStatus());
+		int attractions = gpsUtil.getAttractions().size();
+		for (User user : users) {
+			assertEquals(attractions, user.getUserRewards().size());
+		}
+		assertEquals((long) users.size() * attractions - rewardsBefore, job.getRewardCalls());
+	}
+
+	@Test
+	void pausedJobResumesFromCheckpointAfterRestart() throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new InstantRewardCentral());
+		InternalTestHelper.setInternalUserNumber(30);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, null, false);
+		Path checkpointDirectory = Files.createTempDirectory("reward-jobs");
+
+		// Every user is matched with every attraction, the job is throttled to a chunk of 5 users per second
+		rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+		int callsPerChunk = 5 * gpsUtil.getAttractions().size();
+
+		RewardRecalculationService service = new RewardRecalculationService(tourGuideService, rewardsService, checkpointDirectory.toString());
+		RewardRecalculationJob job = service.start(5, callsPerChunk);
+		await(() -> job.getProcessedUsers() > 0);
+		assertTrue(service.pause(job));
+		assertFalse(service.pause(job));
+		// Let the worker finish its chunk
+		await(() -> !job.isActive());
+		assertFalse(job.isActive());
+		long processedBeforeRestart = job.getProcessedUsers();
+		assertTrue(processedBeforeRestart < 30);
+
+		RewardRecalculationService restarted = new RewardRecalculationService(tourGuideService, rewardsService, checkpointDirectory.toString());
+		RewardRecalculationJob restored = restarted.getJob(job.getId());
+		assertEquals(Status.PAUSED, restored.getStatus());
+		assertEquals(processedBeforeRestart, restored.getProcessedUsers());
+		assertEquals(job.getCursor(), restored.getCursor());
+		assertEquals(job.getRewardCalls(), restored.getRewardCalls());
+
+		assertTrue(restarted.resume(restored));
+		await(() -> restored.getStatus() == Status.COMPLETED);
+
+		assertEquals(Status.COMPLETED, restored.getStatus());
+		assertEquals(30, restored.getProcessedUsers());
+	}
+
+	@Test
+	void cancelledJobStops() throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(100);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, null, false);
+		Path checkpointDirectory = Files.createTempDirectory("reward-jobs");
+
+		RewardRecalculationService service = new RewardRecalculationService(tourGuideService, rewardsService, checkpointDirectory.toString());
+		RewardRecalculationJob job = service.start(10, 20);
+		assertTrue(service.cancel(job));
+		await(() -> !job.isActive());
+
+		assertEquals(Status.CANCELLED, job.getStatus());
+		assertFalse(job.isActive());
+		assertTrue(job.getProcessedUsers() < 100);
+		assertFalse(service.resume(job));
+	}
+}
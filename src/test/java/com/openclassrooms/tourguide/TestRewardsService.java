@@ -7,6 +7,7 @@ import com.openclassrooms.tourguide.dto.user.User;
 import com.openclassrooms.tourguide.dto.user.UserReward;
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import org.junit.jupiter.api.Test;
 import rewardCentral.RewardCentral;
@@ -14,6 +15,8 @@ import rewardCentral.RewardCentral;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -38,6 +41,81 @@ class TestRewardsService {
         assertEquals(1, userRewards.size());
 	}
 
+	@Test
+	void userGetRewardsAfterLeavingGeofence() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction attraction = rewardsService.getAttractions().get(0);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(0, 0), new Date()));
+		rewardsService.calculateRewards(user);
+		// Still far away from every attraction, skipped by the geofence
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(0.1, 0.1), new Date()));
+		rewardsService.calculateRewards(user);
+		assertTrue(user.getUserRewards().isEmpty());
+
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+		rewardsService.calculateRewards(user);
+
+		assertEquals(1, user.getUserRewards().size());
+		assertEquals(attraction.attractionName, user.getUserRewards().get(0).attraction.attractionName);
+	}
+
+	@Test
+	void multipleUserRewardsOnlyForMatchedUsers() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		Attraction attraction = rewardsService.getAttractions().get(0);
+
+		List<User> users = IntStream.range(0, 20).mapToObj(i -> {
+			User user = new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com");
+			Location location = i % 2 == 0 ? attraction : new Location(0, 0);
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), location, new Date()));
+			return user;
+		}).toList();
+
+		rewardsService.calculateMultipleUserRewards(users);
+
+		for (int i = 0; i < users.size(); i++) {
+			assertEquals(i % 2 == 0 ? 1 : 0, users.get(i).getUserRewards().size());
+		}
+	}
+
+	@Test
+	void rewardGrantedAfterVendorFailure() {
+		GpsUtil gpsUtil = new GpsUtil();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		RewardsService rewardsService = new RewardsService(gpsUtil, new FailingOnceRewardCentral(user.getUserId()));
+		Attraction attraction = rewardsService.getAttractions().get(0);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+
+		rewardsService.calculateRewards(user);
+		assertTrue(user.getUserRewards().isEmpty());
+
+		// The matched location is evaluated again, without any new location
+		rewardsService.calculateRewards(user);
+		assertEquals(1, user.getUserRewards().size());
+	}
+
+	@Test
+	void vendorFailureDoesNotDiscardTheBatch() {
+		GpsUtil gpsUtil = new GpsUtil();
+		List<User> users = IntStream.range(0, 20)
+				.mapToObj(i -> new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"))
+				.toList();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new FailingOnceRewardCentral(users.get(0).getUserId()));
+		Attraction attraction = rewardsService.getAttractions().get(0);
+		users.forEach(user -> user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date())));
+
+		rewardsService.calculateMultipleUserRewards(users);
+		assertTrue(users.get(0).getUserRewards().isEmpty());
+		users.subList(1, users.size()).forEach(user -> assertEquals(1, user.getUserRewards().size()));
+
+		rewardsService.calculateMultipleUserRewards(users);
+		assertEquals(1, users.get(0).getUserRewards().size());
+	}
+
 	@Test
 	void isWithinAttractionProximity() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -50,7 +128,7 @@ class TestRewardsService {
 	void nearAllAttractions() {
 		GpsUtil gpsUtil = new GpsUtil();
 		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
-		RewardsService.setProximityBuffer(Integer.MAX_VALUE);
+		rewardsService.setProximityBuffer(Integer.MAX_VALUE);
 
 		InternalTestHelper.setInternalUserNumber(1);
 		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
@@ -59,9 +137,46 @@ class TestRewardsService {
 		List<UserReward> userRewards = tourGuideService.getUserRewards(tourGuideService.getAllUsers().get(0));
 		tourGuideService.tracker.stopTracking();
 
-		RewardsService.setProximityBuffer(10); // reset to default
-
 		assertEquals(gpsUtil.getAttractions().size(), userRewards.size());
 	}
 
+	@Test
+	void nearAllAttractionsWithUserProximity() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User otherUser = new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com");
+		Location location = new Location(0, 0);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), location, new Date()));
+		otherUser.addToVisitedLocations(new VisitedLocation(otherUser.getUserId(), location, new Date()));
+		rewardsService.calculateRewards(user);
+		assertTrue(user.getUserRewards().isEmpty());
+
+		rewardsService.setAttractionProximity(user, Integer.MAX_VALUE);
+		rewardsService.calculateRewards(otherUser);
+
+		assertEquals(rewardsService.getAttractions().size(), user.getUserRewards().size());
+		assertTrue(otherUser.getUserRewards().isEmpty());
+	}
+
+	/**
+	 * Fails the first reward points request for a user
+	 */
+	private static class FailingOnceRewardCentral extends RewardCentral {
+		private final UUID failingUserId;
+		private final AtomicBoolean failed = new AtomicBoolean();
+
+		FailingOnceRewardCentral(UUID failingUserId) {
+			this.failingUserId = failingUserId;
+		}
+
+		@Override
+		public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+			if (userId.equals(failingUserId) && failed.compareAndSet(false, true)) {
+				throw new IllegalStateException("RewardCentral unavailable");
+			}
+			return super.getAttractionRewardPoints(attractionId, userId);
+		}
+	}
 }
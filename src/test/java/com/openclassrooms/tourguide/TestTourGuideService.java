@@ -4,7 +4,9 @@ import com.openclassrooms.tourguide.dto.NearbyAttractionDTO;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.TripDealsPrecomputer.TripDeals;
 import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.dto.user.UserPreferences;
 import gpsUtil.GpsUtil;
 import gpsUtil.location.VisitedLocation;
 import org.junit.jupiter.api.Test;
@@ -15,6 +17,8 @@ import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TestTourGuideService {
@@ -122,4 +126,44 @@ class TestTourGuideService {
 		assertEquals(5, providers.size());
 	}
 
+	@Test
+	void precomputedTripDealsArePricedForColdUser() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		TripDeals tripDeals = tourGuideService.getPrecomputedTripDeals(user);
+
+		assertEquals(5, tripDeals.providers().size());
+		assertEquals(tripDeals.providers(), user.getTripDeals());
+		assertFalse(tourGuideService.isStale(user, tripDeals));
+	}
+
+	@Test
+	void tripDealsAreRecomputedWhenPreferencesChange() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		TripDeals before = tourGuideService.getPrecomputedTripDeals(user);
+		UserPreferences userPreferences = new UserPreferences();
+		userPreferences.setNumberOfAdults(2);
+		tourGuideService.setUserPreferences(user, userPreferences);
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (tourGuideService.getPrecomputedTripDeals(user) == before && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		TripDeals after = tourGuideService.getPrecomputedTripDeals(user);
+		assertNotSame(before, after);
+		assertFalse(tourGuideService.isStale(user, after));
+	}
+
 }
@@ -0,0 +1,177 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.replay.ClusteredTraceGenerator;
+import com.openclassrooms.tourguide.replay.GpsTraceReader;
+import com.openclassrooms.tourguide.replay.GpsTraceRecord;
+import com.openclassrooms.tourguide.replay.GpsTraceWriter;
+import com.openclassrooms.tourguide.replay.InstantRewardCentral;
+import com.openclassrooms.tourguide.replay.RecordingGpsUtil;
+import com.openclassrooms.tourguide.replay.ReplayGpsUtil;
+import com.openclassrooms.tourguide.replay.TraceReplayer;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestTraceReplay {
+
+	@Test
+	void recordedTraceReplaysSameLocations() throws Exception {
+		Path trace = Files.createTempFile("trace", ".bin");
+		List<UUID> userIds = List.of(UUID.randomUUID(), UUID.randomUUID());
+		List<VisitedLocation> recorded = new ArrayList<>();
+		try (GpsTraceWriter writer = new GpsTraceWriter(trace)) {
+			RecordingGpsUtil recordingGpsUtil = new RecordingGpsUtil(writer);
+			for (UUID userId : userIds) {
+				recorded.add(recordingGpsUtil.getUserLocation(userId));
+			}
+		}
+
+		try (GpsTraceReader reader = new GpsTraceReader(trace)) {
+			for (int i = 0; i < recorded.size(); i++) {
+				GpsTraceRecord record = reader.read();
+				assertEquals(i, record.userIndex());
+				assertEquals(recorded.get(i).location.latitude, record.latitude(), 1e-6);
+				assertEquals(recorded.get(i).location.longitude, record.longitude(), 1e-6);
+			}
+			assertNull(reader.read());
+		}
+
+		ReplayGpsUtil gpsUtil = new ReplayGpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new InstantRewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		List<User> users = new ArrayList<>();
+		for (UUID userId : userIds) {
+			User user = new User(userId, "user" + users.size(), "000", "user@tourGuide.com");
+			users.add(user);
+			tourGuideService.addUser(user);
+		}
+
+		TraceReplayer.Report report = new TraceReplayer(tourGuideService, gpsUtil, 2, 0).replay(trace, users::get);
+
+		assertEquals(2, report.records());
+		for (int i = 0; i < users.size(); i++) {
+			assertEquals(recorded.get(i).location.latitude, users.get(i).getLastVisitedLocation().location.latitude, 1e-6);
+		}
+	}
+
+	@Test
+	void recordsOfAUserAreReplayedInTraceOrder() throws Exception {
+		Path trace = Files.createTempFile("trace", ".bin");
+		int userCount = 3;
+		int fixes = 200;
+		try (GpsTraceWriter writer = new GpsTraceWriter(trace)) {
+			for (int i = 0; i < fixes; i++) {
+				for (int u = 0; u < userCount; u++) {
+					writer.write(new GpsTraceRecord(u, i, i / 1000.0, u));
+				}
+			}
+		}
+
+		ReplayGpsUtil gpsUtil = new ReplayGpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new InstantRewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		List<User> users = new ArrayList<>();
+		for (int u = 0; u < userCount; u++) {
+			User user = new User(UUID.randomUUID(), "user" + u, "000", "user@tourGuide.com");
+			users.add(user);
+			tourGuideService.addUser(user);
+		}
+
+		// More workers than users, a user's records would race if they were not kept on one worker
+		new TraceReplayer(tourGuideService, gpsUtil, 8, 0).replay(trace, users::get);
+
+		for (User user : users) {
+			List<VisitedLocation> visitedLocations = user.getVisitedLocations();
+			assertEquals(fixes, visitedLocations.size());
+			for (int i = 0; i < fixes; i++) {
+				assertEquals(i / 1000.0, visitedLocations.get(i).location.latitude, 1e-6);
+			}
+		}
+	}
+
+	@Test
+	void pacedLatencyIncludesTheTimeQueuedBehindSlowCalls() throws Exception {
+		Path trace = Files.createTempFile("trace", ".bin");
+		int fixes = 10;
+		try (GpsTraceWriter writer = new GpsTraceWriter(trace)) {
+			for (int i = 0; i < fixes; i++) {
+				writer.write(new GpsTraceRecord(0, 0, i / 1000.0, 0));
+			}
+		}
+
+		// Every call takes 20 ms, the fixes are all due at once
+		ReplayGpsUtil gpsUtil = new ReplayGpsUtil() {
+			@Override
+			public VisitedLocation getUserLocation(UUID userId) {
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.getUserLocation(userId);
+			}
+		};
+		RewardsService rewardsService = new RewardsService(gpsUtil, new InstantRewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, null, false);
+		User user = new User(UUID.randomUUID(), "user0", "000", "user@tourGuide.com");
+		tourGuideService.addUser(user);
+
+		TraceReplayer.Report report = new TraceReplayer(tourGuideService, gpsUtil, 1, 1).replay(trace, index -> user);
+
+		// Timed from when the worker started them, every call would take about 20 ms
+		assertEquals(10L, report.records());
+		assertTrue(report.p50Millis() > 60, "p50 " + report.p50Millis() + " ms");
+		assertTrue(report.p99Millis() > 160, "p99 " + report.p99Millis() + " ms");
+	}
+
+	@Test
+	void clusteredTraceTriggersMoreRewardsThanUniform() throws Exception {
+		Path clustered = Files.createTempFile("clustered", ".bin");
+		Path uniform = Files.createTempFile("uniform", ".bin");
+		ClusteredTraceGenerator.generate(clustered, new GpsUtil().getAttractions(), 500, 2, 1000, 42);
+		ClusteredTraceGenerator.generateUniform(uniform, 500, 2, 1000, 42);
+
+		long clusteredRewards = replayAndCountRewards(clustered);
+		long uniformRewards = replayAndCountRewards(uniform);
+
+		assertTrue(clusteredRewards > uniformRewards * 2,
+				"Clustered " + clusteredRewards + " rewards, uniform " + uniformRewards);
+	}
+
+	private long replayAndCountRewards(Path trace) throws Exception {
+		ReplayGpsUtil gpsUtil = new ReplayGpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new InstantRewardCentral());
+		InternalTestHelper.setInternalUserNumber(500);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		// Only count the rewards of the trace
+		tourGuideService.getAllUsers().forEach(user -> user.getUserRewards().clear());
+
+		TraceReplayer.Report report = new TraceReplayer(tourGuideService, gpsUtil, 8, 0)
+				.replay(trace, index -> tourGuideService.getUser("internalUser" + index));
+
+		assertEquals(1000, report.records());
+		assertTrue(report.throughput() > 0);
+		assertTrue(report.p50Millis() <= report.p99Millis());
+		return tourGuideService.getAllUsers().stream().mapToLong(user -> user.getUserRewards().size()).sum();
+	}
+}
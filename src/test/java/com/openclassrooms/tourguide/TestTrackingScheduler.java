@@ -0,0 +1,268 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.TrackingScheduler;
+import com.openclassrooms.tourguide.tracker.TrackingScheduler.ScheduledUser;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestTrackingScheduler {
+
+	@Test
+	void stalestUsersAreDueFirst() throws InterruptedException {
+		TrackingScheduler scheduler = new TrackingScheduler(new RewardsService(new GpsUtil(), new RewardCentral()), 1000);
+
+		User recent = userLocatedDaysAgo("recent", 1);
+		User stale = userLocatedDaysAgo("stale", 10);
+		scheduler.schedule(recent);
+		scheduler.schedule(stale);
+
+		List<ScheduledUser> dueUsers = scheduler.takeDueUsers(10);
+
+		assertEquals(2, dueUsers.size());
+		assertEquals(stale, dueUsers.get(0).getUser());
+		assertEquals(recent, dueUsers.get(1).getUser());
+	}
+
+	@Test
+	void callBudgetCapsBatch() throws InterruptedException {
+		TrackingScheduler scheduler = new TrackingScheduler(new RewardsService(new GpsUtil(), new RewardCentral()), 10);
+		IntStream.range(0, 20).forEach(i -> scheduler.schedule(new User(UUID.randomUUID(), "user" + i, "000", "")));
+
+		List<ScheduledUser> dueUsers = scheduler.takeDueUsers(100);
+
+		assertEquals(10, dueUsers.size());
+		assertEquals(10, scheduler.size());
+	}
+
+	@Test
+	void stationaryUsersArePolledLessOften() throws InterruptedException {
+		TrackingScheduler scheduler = new TrackingScheduler(new RewardsService(new GpsUtil(), new RewardCentral()), 1000);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Location location = new Location(33.817595, -117.922008);
+		long now = System.currentTimeMillis();
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), location, new Date(now - TimeUnit.MINUTES.toMillis(5))));
+		scheduler.schedule(user);
+		ScheduledUser scheduledUser = scheduler.takeDueUsers(1).get(0);
+
+		List<Long> intervals = new ArrayList<>();
+		for (int poll = 0; poll < 4; poll++) {
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), location, new Date()));
+			scheduler.reschedule(scheduledUser);
+			intervals.add(TimeUnit.MILLISECONDS.toMinutes(scheduledUser.getDueAt() - scheduledUser.getLastTrackedAt()));
+		}
+
+		assertEquals(List.of(10L, 20L, 30L, 30L), intervals);
+	}
+
+	@Test
+	void movingUsersNearAnAttractionArePolledMoreOften() throws InterruptedException {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		TrackingScheduler scheduler = new TrackingScheduler(rewardsService, 1000);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		// Heading south to Disneyland at 12 mph, a mile away from its reward radius of 10 miles
+		double milesPerDegree = 69.0;
+		long now = System.currentTimeMillis();
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
+				new Location(33.817595 + 12 / milesPerDegree, -117.922008), new Date(now - TimeUnit.MINUTES.toMillis(5))));
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
+				new Location(33.817595 + 11 / milesPerDegree, -117.922008), new Date(now)));
+		scheduler.schedule(user);
+		ScheduledUser scheduledUser = scheduler.takeDueUsers(1).get(0);
+
+		scheduler.reschedule(scheduledUser);
+
+		long interval = scheduledUser.getDueAt() - scheduledUser.getLastTrackedAt();
+		// Polled twice before they can reach the radius, 5 minutes away
+		assertTrue(interval < TimeUnit.MINUTES.toMillis(5), "Interval " + interval + " ms");
+		assertTrue(interval >= TimeUnit.MINUTES.toMillis(1), "Interval " + interval + " ms");
+	}
+
+	@Test
+	void restartResumesFromCheckpointStalestFirst() throws Exception {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		Path checkpointFile = Files.createTempDirectory("tracker").resolve("tracker.checkpoint");
+		TrackingScheduler scheduler = new TrackingScheduler(rewardsService, 1000);
+		scheduler.schedule(userLocatedDaysAgo("tracked", 1));
+		scheduler.schedule(userLocatedDaysAgo("stale", 10));
+		scheduler.schedule(userLocatedDaysAgo("staler", 20));
+		// Only the first user gets tracked before the restart
+		List<ScheduledUser> dueUsers = scheduler.takeDueUsers(10);
+		scheduler.reschedule(dueUsers.get(2));
+		scheduler.writeCheckpoint(checkpointFile);
+
+		TrackingScheduler restarted = new TrackingScheduler(rewardsService, 1000);
+		restarted.schedule(userLocatedDaysAgo("tracked", 1));
+		restarted.schedule(userLocatedDaysAgo("stale", 10));
+		restarted.schedule(userLocatedDaysAgo("staler", 20));
+		int overdue = restarted.restoreCheckpoint(checkpointFile, 1000);
+
+		assertEquals(2, overdue);
+		assertEquals("staler", restarted.takeDueUsers(10).get(0).getUser().getUserName());
+		assertEquals("stale", restarted.takeDueUsers(10).get(0).getUser().getUserName());
+		// The tracked user keeps their interval instead of being tracked again right away
+		assertEquals(1, restarted.size());
+		ScheduledUser tracked = restarted.getScheduledUsers().stream()
+				.filter(scheduledUser -> scheduledUser.getUser().getUserName().equals("tracked"))
+				.findFirst()
+				.orElseThrow();
+		assertTrue(tracked.getDueAt() > System.currentTimeMillis());
+		assertTrue(tracked.getLastTrackedAt() > 0);
+	}
+
+	@Test
+	void overdueUsersAreCaughtUpAtTheCatchUpRate() throws Exception {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		TrackingScheduler scheduler = new TrackingScheduler(rewardsService, 1000);
+		// At 600 calls per minute, 10 minutes of catch-up: more than half an interval
+		int overdueUsers = 6000;
+		IntStream.range(0, overdueUsers).forEach(i -> scheduler.schedule(userLocatedDaysAgo("user" + i, 1)));
+		long overdueSince = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+		Path checkpointFile = Files.createTempDirectory("tracker").resolve("tracker.checkpoint");
+		Files.write(checkpointFile, IntStream.range(0, overdueUsers)
+				.mapToObj(i -> "user" + i + "\t" + overdueSince + "\t" + (overdueSince + i))
+				.toList());
+
+		long before = System.currentTimeMillis();
+		assertEquals(overdueUsers, scheduler.restoreCheckpoint(checkpointFile, 600));
+
+		List<Long> dueTimes = scheduler.getScheduledUsers().stream()
+				.map(ScheduledUser::getDueAt)
+				.sorted()
+				.toList();
+		for (int i = 1; i < dueTimes.size(); i++) {
+			// 100 ms apart, give or take the rounding of each due time
+			assertTrue(dueTimes.get(i) - dueTimes.get(i - 1) >= 99);
+		}
+		assertTrue(dueTimes.get(overdueUsers - 1) - before >= (overdueUsers - 1) * 100L - 1);
+	}
+
+		@Test
+	void checkpointIsRestoredBeforeTrackingStarts() throws Exception {
+		InternalTestHelper.setInternalUserNumber(10);
+		long dueInAnHour = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+		Path checkpointFile = Files.createTempDirectory("tracker").resolve("tracker.checkpoint");
+		Files.write(checkpointFile, IntStream.range(0, 10)
+				.mapToObj(i -> "internalUser" + i + "\t" + System.currentTimeMillis() + "\t" + dueInAnHour)
+				.toList());
+
+		GpsUtil gpsUtil = new GpsUtil();
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, new RewardsService(gpsUtil, new RewardCentral()),
+				checkpointFile);
+		// Long enough for a batch to be tracked, had the users been left due
+		TimeUnit.MILLISECONDS.sleep(1500);
+		tourGuideService.tracker.stopTracking();
+
+		tourGuideService.getAllUsers().forEach(user -> assertEquals(3, user.getVisitedLocations().size()));
+	}
+
+	@Test
+	void trackerKeepsTrackingAfterVendorFailure() throws InterruptedException {
+		Set<UUID> locatedUserIds = ConcurrentHashMap.newKeySet();
+		GpsUtil gpsUtil = new GpsUtil() {
+			@Override
+			public VisitedLocation getUserLocation(UUID userId) {
+				locatedUserIds.add(userId);
+				throw new IllegalStateException("gpsUtil unavailable");
+			}
+		};
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, new RewardsService(gpsUtil, new RewardCentral()));
+
+		User first = new User(UUID.randomUUID(), "first", "000", "first@tourGuide.com");
+		tourGuideService.addUser(first);
+		awaitLocated(locatedUserIds, first);
+		User second = new User(UUID.randomUUID(), "second", "000", "second@tourGuide.com");
+		tourGuideService.addUser(second);
+		awaitLocated(locatedUserIds, second);
+		tourGuideService.tracker.stopTracking();
+
+		assertTrue(locatedUserIds.contains(second.getUserId()));
+	}
+
+	@Test
+	void trackerYieldsWithinABatch() throws InterruptedException {
+		AtomicInteger locatedUsers = new AtomicInteger();
+		GpsUtil gpsUtil = new GpsUtil() {
+			@Override
+			public VisitedLocation getUserLocation(UUID userId) {
+				locatedUsers.incrementAndGet();
+				try {
+					TimeUnit.MILLISECONDS.sleep(50);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return new VisitedLocation(userId, new Location(0, 0), new Date());
+			}
+		};
+		// More users than a chunk, all of them due in the first batch
+		InternalTestHelper.setInternalUserNumber(250);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, new RewardsService(gpsUtil, new RewardCentral()));
+		// Saturated as soon as the first chunk is tracked
+		tourGuideService.tracker.yieldWhile(() -> locatedUsers.get() >= 100);
+
+		TimeUnit.SECONDS.sleep(2);
+		tourGuideService.tracker.stopTracking();
+
+		assertEquals(100, locatedUsers.get());
+	}
+
+	@Test
+	void disabledTrackerNeitherTracksNorCheckpoints() throws Exception {
+		AtomicInteger locatedUsers = new AtomicInteger();
+		GpsUtil gpsUtil = new GpsUtil() {
+			@Override
+			public VisitedLocation getUserLocation(UUID userId) {
+				locatedUsers.incrementAndGet();
+				return new VisitedLocation(userId, new Location(0, 0), new Date());
+			}
+		};
+		InternalTestHelper.setInternalUserNumber(10);
+		Path checkpointFile = Files.createTempDirectory("tracker").resolve("tracker.checkpoint");
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, new RewardsService(gpsUtil, new RewardCentral()),
+				checkpointFile, false);
+
+		// Long enough for the due users to be tracked, had the tracker been started
+		TimeUnit.MILLISECONDS.sleep(1000);
+		tourGuideService.tracker.stopTracking();
+
+		assertEquals(0, locatedUsers.get());
+		assertFalse(Files.exists(checkpointFile));
+	}
+
+		private void awaitLocated(Set<UUID> locatedUserIds, User user) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!locatedUserIds.contains(user.getUserId()) && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+	}
+
+	private User userLocatedDaysAgo(String userName, int days) {
+		User user = new User(UUID.randomUUID(), userName, "000", userName + "@tourGuide.com");
+		Date timeVisited = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days));
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(0, 0), timeVisited));
+		return user;
+	}
+}
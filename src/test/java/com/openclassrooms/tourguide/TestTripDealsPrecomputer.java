@@ -0,0 +1,69 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.service.TripDealsPrecomputer;
+import com.openclassrooms.tourguide.service.TripDealsPrecomputer.TripDeals;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TestTripDealsPrecomputer {
+
+	private static User newUser(String userName) {
+		return new User(UUID.randomUUID(), userName, "000", userName + "@tourGuide.com");
+	}
+
+	@Test
+	void leastRecentlyUsedTripDealsAreEvicted() {
+		TripDealsPrecomputer precomputer = new TripDealsPrecomputer(user -> {
+		}, 2);
+		User jon = newUser("jon");
+		User jon2 = newUser("jon2");
+		User jon3 = newUser("jon3");
+
+		precomputer.store(jon, List.of(), 0);
+		precomputer.store(jon2, List.of(), 0);
+		// jon is now more recently used than jon2
+		assertNotNull(precomputer.get(jon));
+		precomputer.store(jon3, List.of(), 0);
+
+		assertEquals(2, precomputer.size());
+		assertNotNull(precomputer.get(jon));
+		assertNull(precomputer.get(jon2));
+		assertNotNull(precomputer.get(jon3));
+		precomputer.shutdown();
+	}
+
+	@Test
+	void storedTripDealsAreReturnedEvenOnceEvicted() {
+		TripDealsPrecomputer precomputer = new TripDealsPrecomputer(user -> {
+		}, 1);
+		User jon = newUser("jon");
+
+		TripDeals tripDeals = precomputer.store(jon, List.of(), 10);
+		precomputer.store(newUser("jon2"), List.of(), 0);
+
+		assertNull(precomputer.get(jon));
+		assertEquals(10, tripDeals.rewardPoints());
+	}
+
+	@Test
+	void recomputationsAreDroppedAfterShutdown() {
+		AtomicInteger pricings = new AtomicInteger();
+		TripDealsPrecomputer precomputer = new TripDealsPrecomputer(user -> pricings.incrementAndGet());
+		precomputer.shutdown();
+		User jon = newUser("jon");
+
+		precomputer.requestRecompute(jon);
+
+		assertFalse(precomputer.isPending(jon));
+		assertEquals(0, pricings.get());
+	}
+}
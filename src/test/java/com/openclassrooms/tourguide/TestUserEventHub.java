@@ -0,0 +1,167 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.dto.user.UserReward;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.UserEventHub;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestUserEventHub {
+
+	/**
+	 * Records the events it receives, each send waiting for the gate to open
+	 */
+	private static class RecordingSink implements UserEventHub.EventSink {
+		final List<Object> events = new CopyOnWriteArrayList<>();
+		final CountDownLatch gate;
+		final CountDownLatch received;
+		volatile boolean closed;
+
+		RecordingSink(CountDownLatch gate, int expectedEvents) {
+			this.gate = gate;
+			this.received = new CountDownLatch(expectedEvents);
+		}
+
+		@Override
+		public void send(String event, Object data) {
+			try {
+				gate.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			events.add(data);
+			received.countDown();
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+
+	private static VisitedLocation visitedLocation(User user, double latitude) {
+		return new VisitedLocation(user.getUserId(), new Location(latitude, 0), new Date());
+	}
+
+	@Test
+	void trackedLocationIsPushedToSubscriber() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		RecordingSink sink = new RecordingSink(new CountDownLatch(0), 1);
+		tourGuideService.getUserEventHub().subscribe(user, sink);
+
+		VisitedLocation visitedLocation = tourGuideService.trackUserLocation(user);
+
+		assertTrue(sink.received.await(5, TimeUnit.SECONDS));
+		assertEquals(visitedLocation, sink.events.get(0));
+	}
+
+	@Test
+	void locationsAreConflatedForSlowSubscriber() throws InterruptedException {
+		UserEventHub hub = new UserEventHub();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		CountDownLatch gate = new CountDownLatch(1);
+		RecordingSink sink = new RecordingSink(gate, 1);
+		hub.subscribe(user, sink);
+
+		for (int i = 0; i < 100; i++) {
+			hub.publishLocation(user, visitedLocation(user, i));
+		}
+		gate.countDown();
+
+		assertTrue(sink.received.await(5, TimeUnit.SECONDS));
+		Thread.sleep(200);
+		// At most the location being sent when the subscriber stalled, then only the latest one
+		assertTrue(sink.events.size() <= 2);
+		assertEquals(99.0, ((VisitedLocation) sink.events.get(sink.events.size() - 1)).location.latitude);
+	}
+
+	@Test
+	void slowSubscriberIsDroppedWhenRewardsPileUp() {
+		UserEventHub hub = new UserEventHub();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		RecordingSink sink = new RecordingSink(new CountDownLatch(1), 1);
+		hub.subscribe(user, sink);
+
+		for (int i = 0; i < 200; i++) {
+			Attraction attraction = new Attraction("Attraction " + i, "City", "State", 0, 0);
+			hub.publishReward(user, new UserReward(visitedLocation(user, 0), attraction, i));
+		}
+
+		assertTrue(sink.closed);
+		assertEquals(0, hub.getSubscriberCount());
+		sink.gate.countDown();
+	}
+
+	@Test
+	void subscribersAreLimited() {
+		UserEventHub hub = new UserEventHub(1);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+		UserEventHub.Subscription subscription = hub.subscribe(user, new RecordingSink(new CountDownLatch(0), 0));
+		assertNotNull(subscription);
+		assertNull(hub.subscribe(user, new RecordingSink(new CountDownLatch(0), 0)));
+
+		subscription.cancel();
+
+		assertNotNull(hub.subscribe(user, new RecordingSink(new CountDownLatch(0), 0)));
+	}
+
+	@Test
+	void stalledSubscribersDoNotBlockTheOthers() throws InterruptedException {
+		UserEventHub hub = new UserEventHub(100, 200);
+		// Never opened before the end of the test, the writes of these subscribers never return
+		CountDownLatch stall = new CountDownLatch(1);
+		List<RecordingSink> stalledSinks = new CopyOnWriteArrayList<>();
+		List<UserEventHub.Subscription> stalledSubscriptions = new CopyOnWriteArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			User user = new User(UUID.randomUUID(), "stalled" + i, "000", "stalled" + i + "@tourGuide.com");
+			RecordingSink sink = new RecordingSink(stall, 1);
+			stalledSinks.add(sink);
+			stalledSubscriptions.add(hub.subscribe(user, sink));
+			hub.publishLocation(user, visitedLocation(user, i));
+		}
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		RecordingSink sink = new RecordingSink(new CountDownLatch(0), 1);
+		hub.subscribe(user, sink);
+		hub.publishLocation(user, visitedLocation(user, 45));
+
+		try {
+			assertTrue(sink.received.await(5, TimeUnit.SECONDS));
+			// Every stalled write ends up timing out, dispatched on the threads added in place of the blocked ones
+			long deadline = System.currentTimeMillis() + 5000;
+			while (stalledSinks.stream().anyMatch(stalledSink -> !stalledSink.closed) && System.currentTimeMillis() < deadline) {
+				TimeUnit.MILLISECONDS.sleep(20);
+			}
+			stalledSubscriptions.forEach(subscription -> assertTrue(subscription.isCancelled()));
+			stalledSinks.forEach(stalledSink -> assertTrue(stalledSink.closed));
+		} finally {
+			stall.countDown();
+		}
+	}
+}
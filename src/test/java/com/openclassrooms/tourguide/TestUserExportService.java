@@ -0,0 +1,79 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.ExportFormat;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.UserExportService;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestUserExportService {
+
+	@Test
+	void exportNdjson() throws IOException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(5);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		UserExportService userExportService = new UserExportService(tourGuideService);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long exported = userExportService.export(out, ExportFormat.NDJSON, null, null);
+		tourGuideService.tracker.stopTracking();
+
+		String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+		assertEquals(5, exported);
+		assertEquals(5, lines.length);
+		for (String line : lines) {
+			assertTrue(line.startsWith("{\"userId\":"), line);
+		}
+	}
+
+	@Test
+	void exportCsvWithinTimeWindow() throws IOException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		UserExportService userExportService = new UserExportService(tourGuideService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User user2 = new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(1, 2), new Date(1_000)));
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(3, 4), new Date(5_000)));
+		user2.addToVisitedLocations(new VisitedLocation(user2.getUserId(), new Location(5, 6), new Date(9_000)));
+		tourGuideService.addUser(user);
+		tourGuideService.addUser(user2);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long exported = userExportService.export(out, ExportFormat.CSV, new Date(2_000), new Date(8_000));
+		tourGuideService.tracker.stopTracking();
+
+		String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+		assertEquals(1, exported);
+		assertEquals(2, lines.length);
+		assertTrue(lines[1].startsWith("location," + user.getUserId() + ",jon,1970-01-01T00:00:05Z,3.0,4.0"));
+	}
+
+	@Test
+	void formatIsMatchedByName() {
+		assertEquals(ExportFormat.CSV, ExportFormat.fromName("csv"));
+		assertEquals(ExportFormat.NDJSON, ExportFormat.fromName("NDJson"));
+		assertThrows(IllegalArgumentException.class, () -> ExportFormat.fromName("xml"));
+	}
+}
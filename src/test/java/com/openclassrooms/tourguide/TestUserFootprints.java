@@ -0,0 +1,144 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.monitoring.MemoryFootprintEndpoint;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.UserFootprints;
+import com.openclassrooms.tourguide.service.UserLocks;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestUserFootprints {
+
+	@Test
+	void estimatesFollowTheUsers() {
+		UserFootprints userFootprints = new UserFootprints(new UserLocks(), () -> 0);
+		User jon = newUserWithHistory("jon", 3);
+		User jane = newUserWithHistory("jane", 3);
+		userFootprints.account(jon);
+		userFootprints.account(jane);
+
+		addLocations(jon, 5);
+		userFootprints.account(jon);
+
+		assertEquals(2L, userFootprints.getUsers());
+		assertEquals(11L, userFootprints.getVisitedLocations());
+		assertEquals(2 * UserFootprints.USER_BYTES + 11 * UserFootprints.VISITED_LOCATION_BYTES,
+				userFootprints.getTotalBytes());
+		assertEquals(Map.of("2-3", 1L, "8-15", 1L), userFootprints.getHistoryLengthHistogram());
+		assertEquals(2L, userFootprints.getBytesHistogram().values().stream().mapToLong(Long::longValue).sum());
+	}
+
+	@Test
+	void historyLimitSharesTheBudgetOnceExceeded() {
+		UserFootprints userFootprints = new UserFootprints(new UserLocks(), () -> 0);
+		userFootprints.account(newUserWithHistory("jon", 1000));
+		userFootprints.account(newUserWithHistory("jane", 1000));
+		assertEquals(0, userFootprints.getHistoryLimit());
+
+		userFootprints.setMaxVisitedLocations(500);
+		assertEquals(500, userFootprints.getHistoryLimit());
+
+		long budget = 2 * (UserFootprints.USER_BYTES + 100 * UserFootprints.VISITED_LOCATION_BYTES);
+		userFootprints.setMaxTotalBytes(budget);
+		assertEquals(100, userFootprints.getHistoryLimit());
+	}
+
+	@Test
+	void trimmedHistoryKeepsRewardingNewLocations() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		User user = newUserWithHistory("jon", 20);
+		rewardsService.calculateRewards(user);
+		VisitedLocation latest = user.getLastVisitedLocation();
+
+		assertEquals(10, rewardsService.trimVisitedLocations(user, 10));
+		assertEquals(10, user.getVisitedLocations().size());
+		assertEquals(latest, user.getLastVisitedLocation());
+
+		// Locations not matched yet are never trimmed
+		addLocations(user, 5);
+		Attraction attraction = rewardsService.getAttractions().get(0);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+		assertEquals(10, rewardsService.trimVisitedLocations(user, 1));
+		assertEquals(6, user.getVisitedLocations().size());
+
+		rewardsService.calculateRewards(user);
+		assertEquals(1, user.getUserRewards().size());
+		assertEquals(5, rewardsService.trimVisitedLocations(user, 1));
+	}
+
+	@Test
+	void rewardLocationsTrimmedFromTheHistoryAndPrecomputedTripDealsAreCounted() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		UserFootprints userFootprints = new UserFootprints(rewardsService.getUserLocks(), () -> 3);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction attraction = rewardsService.getAttractions().get(0);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date(0)));
+		addLocations(user, 20);
+		rewardsService.calculateRewards(user);
+		assertEquals(0, userFootprints.account(user).trimmedRewardLocations());
+
+		rewardsService.trimVisitedLocations(user, 10);
+
+		UserFootprints.Footprint footprint = userFootprints.account(user);
+		assertEquals(1, footprint.trimmedRewardLocations());
+		assertEquals(UserFootprints.USER_BYTES + 11 * UserFootprints.VISITED_LOCATION_BYTES + UserFootprints.USER_REWARD_BYTES,
+				footprint.bytes());
+		assertEquals(footprint.bytes() + 3 * UserFootprints.PRECOMPUTED_TRIP_DEALS_BYTES, userFootprints.getTotalBytes());
+	}
+
+	@Test
+	void trackingTrimsAboveTheLimit() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		tourGuideService.getUserFootprints().setMaxVisitedLocations(20);
+
+		User user = newUserWithHistory("jon", 20);
+		tourGuideService.addUser(user);
+		VisitedLocation visitedLocation = tourGuideService.trackUserLocation(user);
+
+		assertEquals(15, user.getVisitedLocations().size());
+		assertEquals(visitedLocation, user.getLastVisitedLocation());
+		assertEquals(6L, tourGuideService.getUserFootprints().getTrimmedLocations());
+
+		MemoryFootprintEndpoint endpoint = new MemoryFootprintEndpoint(tourGuideService);
+		Map<String, Object> footprint = endpoint.footprint();
+		assertEquals(1L, footprint.get("users"));
+		assertEquals(15L, footprint.get("visitedLocations"));
+		assertEquals(Map.of("8-15", 1L), footprint.get("historyLengthHistogram"));
+		assertTrue((long) endpoint.user("jon").get("estimatedBytes") > UserFootprints.USER_BYTES);
+		assertNull(endpoint.user("jane"));
+	}
+
+	private User newUserWithHistory(String userName, int locations) {
+		User user = new User(UUID.randomUUID(), userName, "000", userName + "@tourGuide.com");
+		addLocations(user, locations);
+		return user;
+	}
+
+	private void addLocations(User user, int locations) {
+		for (int i = 0; i < locations; i++) {
+			// Far from any attraction
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(-80, 0.1 * i), new Date()));
+		}
+	}
+}
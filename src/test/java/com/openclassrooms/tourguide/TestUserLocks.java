@@ -0,0 +1,155 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.dto.user.UserReward;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.UserLocks;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestUserLocks {
+	// Ends the hold of lockedWhileHeld
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@Test
+	void noDuplicateRewardsUnderConcurrentUpdates() throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		List<Attraction> attractions = rewardsService.getAttractions();
+		List<User> users = IntStream.range(0, 20)
+				.mapToObj(i -> new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"))
+				.toList();
+
+		// Several writers per user: each visits an attraction and calculates the rewards,
+		// while another one keeps changing the proximity, which makes the user re-evaluate their locations
+		ExecutorService executor = Executors.newFixedThreadPool(50);
+		List<Future<?>> updates = new ArrayList<>();
+		for (User user : users) {
+			for (int i = 0; i < 5; i++) {
+				Attraction attraction = attractions.get(i);
+				updates.add(executor.submit(() -> {
+					user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+					rewardsService.calculateRewards(user);
+				}));
+			}
+			updates.add(executor.submit(() -> {
+				for (int proximity = 10; proximity < 15; proximity++) {
+					rewardsService.setAttractionProximity(user, proximity);
+				}
+			}));
+		}
+		for (Future<?> update : updates) {
+			update.get();
+		}
+		executor.shutdown();
+
+		for (User user : users) {
+			long distinctAttractions = user.getUserRewards().stream()
+					.map(r -> r.attraction.attractionName)
+					.distinct()
+					.count();
+			assertEquals(distinctAttractions, user.getUserRewards().size());
+			List<String> rewarded = user.getUserRewards().stream().map(r -> r.attraction.attractionName).toList();
+			attractions.subList(0, 5).forEach(a -> assertTrue(rewarded.contains(a.attractionName)));
+		}
+	}
+
+	@Test
+	void concurrentWritersAddEachRewardOnce() throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		List<Attraction> attractions = gpsUtil.getAttractions();
+		UserLocks userLocks = new UserLocks();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attractions.get(0), new Date());
+
+		ExecutorService executor = Executors.newFixedThreadPool(32);
+		List<Future<?>> writers = new ArrayList<>();
+		for (int i = 0; i < 32; i++) {
+			writers.add(executor.submit(() -> attractions.forEach(attraction ->
+					userLocks.withLock(user, () -> user.addUserReward(new UserReward(visitedLocation, attraction, 1))))));
+		}
+		for (Future<?> writer : writers) {
+			writer.get();
+		}
+		executor.shutdown();
+
+		assertEquals(attractions.size(), user.getUserRewards().size());
+	}
+
+	@Test
+	void usersOnDifferentStripesDoNotBlockEachOther() throws Exception {
+		UserLocks userLocks = new UserLocks();
+		User holder = newUser("holder");
+		User other = newUser("other");
+		while (userLocks.stripeOf(other) == userLocks.stripeOf(holder)) {
+			other = newUser("other");
+		}
+
+		CountDownLatch entered = lockedWhileHeld(userLocks, holder, other);
+
+		// Granted while the holder's stripe is still locked
+		assertTrue(entered.await(10, TimeUnit.SECONDS));
+		release.countDown();
+	}
+
+	@Test
+	void usersOnTheSameStripeWaitForEachOther() throws Exception {
+		UserLocks userLocks = new UserLocks(1);
+		User holder = newUser("holder");
+		User other = newUser("other");
+
+		CountDownLatch entered = lockedWhileHeld(userLocks, holder, other);
+
+		assertFalse(entered.await(200, TimeUnit.MILLISECONDS));
+		release.countDown();
+		assertTrue(entered.await(10, TimeUnit.SECONDS));
+	}
+
+	private static User newUser(String userName) {
+		return new User(UUID.randomUUID(), userName, "000", userName + "@tourGuide.com");
+	}
+
+	/**
+	 * Holds the lock of a user until {@link #release} opens, then tries to lock another user from a second thread
+	 *
+	 * @return Opened once the other user's lock is granted
+	 */
+	private CountDownLatch lockedWhileHeld(UserLocks userLocks, User holder, User other) throws InterruptedException {
+		CountDownLatch held = new CountDownLatch(1);
+		CountDownLatch entered = new CountDownLatch(1);
+		Thread holderThread = new Thread(() -> userLocks.withLock(holder, () -> {
+			held.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+		holderThread.setDaemon(true);
+		holderThread.start();
+		assertTrue(held.await(10, TimeUnit.SECONDS));
+
+		Thread otherThread = new Thread(() -> userLocks.withLock(other, entered::countDown));
+		otherThread.setDaemon(true);
+		otherThread.start();
+		return entered;
+	}
+}
@@ -0,0 +1,79 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.UserSpatialIndex;
+import com.openclassrooms.tourguide.service.UserSpatialIndex.NearbyUser;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestUserSpatialIndex {
+
+	@Test
+	void findMatchesFullScan() {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		UserSpatialIndex userSpatialIndex = new UserSpatialIndex(rewardsService);
+		Random random = new Random(42);
+		List<User> users = new ArrayList<>();
+		List<Location> locations = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++) {
+			User user = new User(UUID.randomUUID(), "user" + i, "000", "");
+			// Users clustered around a few points, some crossing the antimeridian
+			Location location = new Location(
+					(i % 3) * 30 + random.nextGaussian() * 2,
+					(i % 3 == 0 ? 179.5 : -100) + random.nextGaussian() * 2);
+			userSpatialIndex.update(user, location);
+			users.add(user);
+			locations.add(location);
+		}
+
+		for (int n = 0; n < 20; n++) {
+			Location centre = locations.get(random.nextInt(locations.size()));
+			double radius = 1 + random.nextDouble() * 200;
+
+			List<UUID> expected = new ArrayList<>();
+			for (int i = 0; i < users.size(); i++) {
+				if (rewardsService.getDistance(centre, locations.get(i)) <= radius) {
+					expected.add(users.get(i).getUserId());
+				}
+			}
+			List<NearbyUser> within = userSpatialIndex.findWithin(centre, radius);
+			assertEquals(expected.size(), within.size());
+			assertTrue(within.stream().allMatch(nearbyUser -> expected.contains(nearbyUser.user().getUserId())));
+
+			List<Double> nearestDistances = locations.stream()
+					.map(location -> rewardsService.getDistance(centre, location))
+					.sorted(Comparator.naturalOrder())
+					.limit(10)
+					.toList();
+			assertEquals(nearestDistances, userSpatialIndex.findNearest(centre, 10).stream().map(NearbyUser::distance).toList());
+		}
+	}
+
+	@Test
+	void updateMovesUser() {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		UserSpatialIndex userSpatialIndex = new UserSpatialIndex(rewardsService);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Location paris = new Location(48.8566, 2.3522);
+		Location tokyo = new Location(35.6762, 139.6503);
+
+		userSpatialIndex.update(user, paris);
+		userSpatialIndex.update(user, tokyo);
+
+		assertEquals(1, userSpatialIndex.size());
+		assertTrue(userSpatialIndex.findWithin(paris, 100).isEmpty());
+		assertEquals(user, userSpatialIndex.findWithin(tokyo, 100).get(0).user());
+	}
+}
@@ -0,0 +1,81 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import com.openclassrooms.tourguide.service.AttractionCatalog;
+import com.openclassrooms.tourguide.service.DistanceKernel;
+import com.openclassrooms.tourguide.service.ScalarDistanceKernel;
+import gpsUtil.location.Attraction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scalar and vectorised distance kernels, one user location against the whole catalog.
+ * <p>
+ * Run with: mvn -Pbenchmark test-compile exec:exec
+ * <p>
+ * The JMH annotation processor generates the benchmark list during test-compile, and each benchmark runs in a
+ * forked JVM with the incubating Vector API module, so the vector kernel is the one measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class DistanceKernelBenchmark {
+
+	// 26 is the size of the gpsUtil catalog
+	@Param({"26", "1024", "16384"})
+	private int attractions;
+
+	private AttractionCatalog catalog;
+	private double[] distances;
+	private final DistanceKernel scalarKernel = new ScalarDistanceKernel();
+	private final DistanceKernel bestKernel = DistanceKernel.best();
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		List<Attraction> catalogAttractions = new ArrayList<>();
+		for (int i = 0; i < attractions; i++) {
+			catalogAttractions.add(new Attraction("attraction" + i, "city", "state",
+					random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180));
+		}
+		catalog = new AttractionCatalog(1, catalogAttractions);
+		distances = new double[attractions];
+	}
+
+	@Benchmark
+	public double[] scalar() {
+		scalarKernel.distances(33.817595, -117.922008, catalog, distances);
+		return distances;
+	}
+
+	@Benchmark
+	public double[] vector() {
+		bestKernel.distances(33.817595, -117.922008, catalog, distances);
+		return distances;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(DistanceKernelBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+}
@@ -0,0 +1,74 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.replay.ClusteredTraceGenerator;
+import com.openclassrooms.tourguide.replay.InstantRewardCentral;
+import com.openclassrooms.tourguide.replay.ReplayGpsUtil;
+import com.openclassrooms.tourguide.replay.TraceReplayer;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import rewardCentral.RewardCentral;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays clustered traces at growing numbers of users, to follow the scaling curve of the tracking path.
+ * <p>
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.class=com.openclassrooms.tourguide.benchmark.TraceReplayBenchmark
+ * [-Dbenchmark.args="10000 100000"] [-Dbenchmark.jvmArgs="-Xmx4g -Dreplay.threads=8"]
+ * <p>
+ * RewardCentral answers right away unless -Dreplay.vendorLatency=true, -Dreplay.speedUp paces the replay
+ * (0, the default, replays as fast as possible) and -Dreplay.threads sets the concurrent tracking calls.
+ * Warm-up replays run first and are not reported, until the tracking path is compiled and its allocations
+ * eliminated: a single warm-up still left the next run at half the steady throughput, with three times the allocation.
+ * The 1,000,000 users run needs a heap of about 4 gigabytes.
+ */
+public class TraceReplayBenchmark {
+	private static final int[] DEFAULT_USER_COUNTS = {10_000, 100_000, 1_000_000};
+	private static final int WARM_UP_USERS = 10_000;
+	private static final int WARM_UP_PASSES = 3;
+	// An hour of fixes, every user is tracked 12 times
+	private static final int STEPS = 12;
+	private static final long STEP_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+	public static void main(String[] args) throws Exception {
+		int[] userCounts = args.length == 0 ? DEFAULT_USER_COUNTS : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+		boolean vendorLatency = Boolean.getBoolean("replay.vendorLatency");
+		double speedUp = Double.parseDouble(System.getProperty("replay.speedUp", "0"));
+		int threads = Integer.getInteger("replay.threads", 64);
+		List<Attraction> attractions = new GpsUtil().getAttractions();
+
+		for (int pass = 0; pass < WARM_UP_PASSES; pass++) {
+			System.out.println("Warm-up: " + replay(attractions, WARM_UP_USERS, vendorLatency, speedUp, threads));
+		}
+		for (int users : userCounts) {
+			System.out.println(replay(attractions, users, vendorLatency, speedUp, threads));
+		}
+	}
+
+	private static TraceReplayer.Report replay(List<Attraction> attractions, int users, boolean vendorLatency,
+											   double speedUp, int threads) throws Exception {
+		Path trace = Files.createTempFile("tourguide-trace-", ".bin");
+		try {
+			ClusteredTraceGenerator.generate(trace, attractions, users, STEPS, STEP_MILLIS, 42);
+
+			ReplayGpsUtil gpsUtil = new ReplayGpsUtil();
+			RewardCentral rewardCentral = vendorLatency ? new RewardCentral() : new InstantRewardCentral();
+			RewardsService rewardsService = new RewardsService(gpsUtil, rewardCentral);
+			InternalTestHelper.setInternalUserNumber(users);
+			TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+			tourGuideService.tracker.stopTracking();
+
+			TraceReplayer replayer = new TraceReplayer(tourGuideService, gpsUtil, threads, speedUp);
+			return replayer.replay(trace, index -> tourGuideService.getUser("internalUser" + index));
+		} finally {
+			Files.deleteIfExists(trace);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package com.openclassrooms.tourguide.replay;
+
+import gpsUtil.location.Attraction;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic traces where users gather around attractions, as they do in production,
+ * unlike the uniform locations of the internal users.
+ * <p>
+ * Each user starts near a hotspot attraction, picked with a Zipf distribution so that a few attractions
+ * draw most of the crowd, then walks a few hundred yards between fixes and sometimes moves to another hotspot.
+ */
+public final class ClusteredTraceGenerator {
+	private static final double MILES_PER_DEGREE = 69.0;
+	// Spread of the users around their hotspot, most of them end up within the default proximity
+	private static final double CLUSTER_RADIUS_MILES = 5;
+	private static final double STEP_MILES = 0.3;
+	private static final double HOP_PROBABILITY = 0.05;
+
+	private ClusteredTraceGenerator() {
+	}
+
+	/**
+	 * Writes a clustered trace, ordered by time, with every user located once per step.
+	 *
+	 * @param file        The trace file.
+	 * @param attractions The attractions to gather around.
+	 * @param users       The number of users, with indexes from 0.
+	 * @param steps       The number of fixes per user.
+	 * @param stepMillis  The time between two fixes of a user.
+	 * @param seed        The random seed, a trace is reproducible.
+	 * @return The number of records written.
+	 */
+	public static long generate(Path file, List<Attraction> attractions, int users, int steps, long stepMillis, long seed)
+			throws IOException {
+		Random random = new Random(seed);
+		double[] cumulativeWeights = zipfCumulativeWeights(attractions.size());
+		double[] latitudes = new double[users];
+		double[] longitudes = new double[users];
+		for (int user = 0; user < users; user++) {
+			moveToHotspot(user, attractions, cumulativeWeights, latitudes, longitudes, random);
+		}
+
+		try (GpsTraceWriter writer = new GpsTraceWriter(file)) {
+			for (int step = 0; step < steps; step++) {
+				for (int user = 0; user < users; user++) {
+					if (step > 0) {
+						if (random.nextDouble() < HOP_PROBABILITY) {
+							moveToHotspot(user, attractions, cumulativeWeights, latitudes, longitudes, random);
+						} else {
+							latitudes[user] += random.nextGaussian() * STEP_MILES / MILES_PER_DEGREE;
+							longitudes[user] += random.nextGaussian() * STEP_MILES / MILES_PER_DEGREE;
+						}
+					}
+					// Users are spread over the step instead of all being located at once
+					long timeMillis = step * stepMillis + user * stepMillis / users;
+					writer.write(new GpsTraceRecord(user, timeMillis, latitudes[user], longitudes[user]));
+				}
+			}
+			return writer.getRecords();
+		}
+	}
+
+	/**
+	 * Writes a trace with uniformly random locations, like the history of the internal users, for comparison.
+	 */
+	public static long generateUniform(Path file, int users, int steps, long stepMillis, long seed) throws IOException {
+		Random random = new Random(seed);
+		try (GpsTraceWriter writer = new GpsTraceWriter(file)) {
+			for (int step = 0; step < steps; step++) {
+				for (int user = 0; user < users; user++) {
+					long timeMillis = step * stepMillis + user * stepMillis / users;
+					writer.write(new GpsTraceRecord(user, timeMillis,
+							random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180));
+				}
+			}
+			return writer.getRecords();
+		}
+	}
+
+	private static double[] zipfCumulativeWeights(int size) {
+		double[] cumulative = new double[size];
+		double total = 0;
+		for (int rank = 0; rank < size; rank++) {
+			total += 1.0 / (rank + 1);
+			cumulative[rank] = total;
+		}
+		for (int rank = 0; rank < size; rank++) {
+			cumulative[rank] /= total;
+		}
+		return cumulative;
+	}
+
+	private static void moveToHotspot(int user, List<Attraction> attractions, double[] cumulativeWeights,
+									  double[] latitudes, double[] longitudes, Random random) {
+		double pick = random.nextDouble();
+		int hotspot = 0;
+		while (hotspot < cumulativeWeights.length - 1 && cumulativeWeights[hotspot] < pick) {
+			hotspot++;
+		}
+		Attraction attraction = attractions.get(hotspot);
+		latitudes[user] = attraction.latitude + random.nextGaussian() * CLUSTER_RADIUS_MILES / MILES_PER_DEGREE;
+		longitudes[user] = attraction.longitude + random.nextGaussian() * CLUSTER_RADIUS_MILES / MILES_PER_DEGREE;
+	}
+}
@@ -0,0 +1,46 @@
+package com.openclassrooms.tourguide.replay;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads a trace file written by {@link GpsTraceWriter}, one record at a time.
+ */
+public class GpsTraceReader implements Closeable {
+
+	private final DataInputStream in;
+
+	public GpsTraceReader(Path file) throws IOException {
+		this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+		if (in.readInt() != GpsTraceWriter.MAGIC || in.readInt() != GpsTraceWriter.VERSION) {
+			in.close();
+			throw new IOException(file + " is not a trace file");
+		}
+	}
+
+	/**
+	 * @return The next record, or null at the end of the trace.
+	 */
+	public GpsTraceRecord read() throws IOException {
+		int userIndex;
+		try {
+			userIndex = in.readInt();
+		} catch (EOFException e) {
+			return null;
+		}
+		long timeMillis = in.readInt();
+		double latitude = in.readInt() / GpsTraceWriter.COORDINATE_SCALE;
+		double longitude = in.readInt() / GpsTraceWriter.COORDINATE_SCALE;
+		return new GpsTraceRecord(userIndex, timeMillis, latitude, longitude);
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
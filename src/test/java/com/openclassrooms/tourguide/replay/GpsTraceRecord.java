@@ -0,0 +1,12 @@
+package com.openclassrooms.tourguide.replay;
+
+/**
+ * A location fix of a trace.
+ *
+ * @param userIndex  The index of the user, internalUser{index} for the internal users.
+ * @param timeMillis The time of the fix since the start of the trace.
+ * @param latitude   The latitude, stored with a precision of a millionth of a degree.
+ * @param longitude  The longitude, stored with a precision of a millionth of a degree.
+ */
+public record GpsTraceRecord(int userIndex, long timeMillis, double latitude, double longitude) {
+}
@@ -0,0 +1,44 @@
+package com.openclassrooms.tourguide.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes a trace file: a header, then one fixed-size record of 16 bytes per location fix,
+ * with the coordinates as millionths of a degree. Records are expected in time order.
+ */
+public class GpsTraceWriter implements Closeable {
+	static final int MAGIC = 0x47505354;
+	static final int VERSION = 1;
+	static final double COORDINATE_SCALE = 1e6;
+
+	private final DataOutputStream out;
+	private long records;
+
+	public GpsTraceWriter(Path file) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+	}
+
+	public synchronized void write(GpsTraceRecord record) throws IOException {
+		out.writeInt(record.userIndex());
+		out.writeInt(Math.toIntExact(record.timeMillis()));
+		out.writeInt((int) Math.round(record.latitude() * COORDINATE_SCALE));
+		out.writeInt((int) Math.round(record.longitude() * COORDINATE_SCALE));
+		records++;
+	}
+
+	public synchronized long getRecords() {
+		return records;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		out.close();
+	}
+}
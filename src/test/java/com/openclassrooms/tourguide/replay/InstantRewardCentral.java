@@ -0,0 +1,16 @@
+package com.openclassrooms.tourguide.replay;
+
+import rewardCentral.RewardCentral;
+
+import java.util.UUID;
+
+/**
+ * A RewardCentral answering right away, to measure TourGuide without the vendor latency.
+ */
+public class InstantRewardCentral extends RewardCentral {
+
+	@Override
+	public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+		return (attractionId.hashCode() ^ userId.hashCode()) & 0x3FF;
+	}
+}
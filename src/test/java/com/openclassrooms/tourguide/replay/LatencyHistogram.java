@@ -0,0 +1,41 @@
+package com.openclassrooms.tourguide.replay;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in exponential buckets growing by 5%, so percentiles are within 5% of the exact value
+ * whatever the range, from microseconds to minutes, in a few hundred counters.
+ */
+class LatencyHistogram {
+	private static final double GROWTH = 1.05;
+	private static final double LOG_GROWTH = Math.log(GROWTH);
+	private static final int BUCKETS = 512;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	void record(long nanos) {
+		double micros = Math.max(1, nanos / 1_000.0);
+		int bucket = Math.min(BUCKETS - 1, (int) (Math.log(micros) / LOG_GROWTH));
+		counts.incrementAndGet(bucket);
+	}
+
+	/**
+	 * @param percentile Between 0 and 100.
+	 * @return The upper bound of the bucket holding the percentile, in milliseconds.
+	 */
+	double percentileMillis(double percentile) {
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			total += counts.get(i);
+		}
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank && seen > 0) {
+				return Math.pow(GROWTH, i + 1) / 1_000;
+			}
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,46 @@
+package com.openclassrooms.tourguide.replay;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.VisitedLocation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A gpsUtil recording every location it returns to a trace. Users are numbered in their order of appearance.
+ */
+public class RecordingGpsUtil extends GpsUtil {
+
+	private final GpsTraceWriter writer;
+	private final long start = System.currentTimeMillis();
+	private final Map<UUID, Integer> userIndexes = new ConcurrentHashMap<>();
+	private final AtomicInteger nextUserIndex = new AtomicInteger();
+
+	public RecordingGpsUtil(GpsTraceWriter writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public VisitedLocation getUserLocation(UUID userId) {
+		VisitedLocation visitedLocation = super.getUserLocation(userId);
+		int userIndex = userIndexes.computeIfAbsent(userId, id -> nextUserIndex.getAndIncrement());
+		try {
+			writer.write(new GpsTraceRecord(userIndex, System.currentTimeMillis() - start,
+					visitedLocation.location.latitude, visitedLocation.location.longitude));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return visitedLocation;
+	}
+
+	/**
+	 * @return The index given to a user in the trace, or null if the user was never located.
+	 */
+	public Integer getUserIndex(UUID userId) {
+		return userIndexes.get(userId);
+	}
+}
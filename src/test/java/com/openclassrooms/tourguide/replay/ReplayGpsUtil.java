@@ -0,0 +1,35 @@
+package com.openclassrooms.tourguide.replay;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A gpsUtil answering with the locations of a trace, queued per user by the replayer, without the vendor latency.
+ * Users with no queued location are located by the real gpsUtil.
+ */
+public class ReplayGpsUtil extends GpsUtil {
+
+	private final Map<UUID, Queue<Location>> pendingLocations = new ConcurrentHashMap<>();
+
+	public void enqueue(UUID userId, Location location) {
+		pendingLocations.computeIfAbsent(userId, id -> new ConcurrentLinkedQueue<>()).add(location);
+	}
+
+	@Override
+	public VisitedLocation getUserLocation(UUID userId) {
+		Queue<Location> locations = pendingLocations.get(userId);
+		Location location = locations == null ? null : locations.poll();
+		if (location == null) {
+			return super.getUserLocation(userId);
+		}
+		return new VisitedLocation(userId, location, new Date());
+	}
+}
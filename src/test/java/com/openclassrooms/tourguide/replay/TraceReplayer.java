@@ -0,0 +1,133 @@
+package com.openclassrooms.tourguide.replay;
+
+import com.openclassrooms.tourguide.dto.user.User;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import gpsUtil.location.Location;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Replays a trace through {@link TourGuideService#trackUserLocation(User)}, with the locations served by a
+ * {@link ReplayGpsUtil}, and reports the throughput, the latency percentiles and the allocation rate.
+ * <p>
+ * Records are replayed at their trace time divided by the speed-up, or as fast as possible with a speed-up of 0.
+ * Users are partitioned across the workers by index, so the records of a user are tracked one at a time, in trace order.
+ * When paced, latencies are measured from the time a record was due rather than from when a worker picked it up,
+ * so that the time spent queued behind slow calls is reported instead of hidden.
+ */
+public class TraceReplayer {
+
+	public record Report(int users, long records, long elapsedMillis, double throughput,
+						 double p50Millis, double p95Millis, double p99Millis, double p999Millis,
+						 double allocatedMegabytesPerSecond, long allocatedBytesPerRecord) {
+
+		@Override
+		public String toString() {
+			return String.format(Locale.US,
+					"%,d users, %,d records in %,d ms: %,.0f records/s, latency p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, "
+							+ "p99.9 %.2f ms, allocation %,.0f MB/s, %,d bytes/record",
+					users, records, elapsedMillis, throughput, p50Millis, p95Millis, p99Millis, p999Millis,
+					allocatedMegabytesPerSecond, allocatedBytesPerRecord);
+		}
+	}
+
+	private final TourGuideService tourGuideService;
+	private final ReplayGpsUtil gpsUtil;
+	private final int threads;
+	private final double speedUp;
+
+	/**
+	 * @param tourGuideService The service built with the replay gpsUtil.
+	 * @param gpsUtil          The replay gpsUtil.
+	 * @param threads          The number of workers, and of concurrent tracking calls.
+	 * @param speedUp          How many times faster than the trace time to replay, 0 for as fast as possible.
+	 */
+	public TraceReplayer(TourGuideService tourGuideService, ReplayGpsUtil gpsUtil, int threads, double speedUp) {
+		this.tourGuideService = tourGuideService;
+		this.gpsUtil = gpsUtil;
+		this.threads = threads;
+		this.speedUp = speedUp;
+	}
+
+	/**
+	 * @param trace The trace file.
+	 * @param users The user of each index of the trace.
+	 * @return The report of the replay.
+	 */
+	public Report replay(Path trace, IntFunction<User> users) throws IOException, InterruptedException {
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		LatencyHistogram latencies = new LatencyHistogram();
+		LongAdder allocatedBytes = new LongAdder();
+		int maxInFlight = threads * 4;
+		Semaphore inFlight = new Semaphore(maxInFlight);
+		ExecutorService[] workers = new ExecutorService[threads];
+		for (int w = 0; w < threads; w++) {
+			workers[w] = Executors.newSingleThreadExecutor();
+		}
+		long records = 0;
+		int maxUserIndex = -1;
+
+		long start = System.nanoTime();
+		try (GpsTraceReader reader = new GpsTraceReader(trace)) {
+			GpsTraceRecord record;
+			while ((record = reader.read()) != null) {
+				long dueNanos = pace(start, record.timeMillis());
+				User user = users.apply(record.userIndex());
+				Location location = new Location(record.latitude(), record.longitude());
+				inFlight.acquire();
+				workers[record.userIndex() % threads].execute(() -> {
+					try {
+						long allocatedBefore = threadMXBean.getCurrentThreadAllocatedBytes();
+						long callStart = speedUp > 0 ? dueNanos : System.nanoTime();
+						gpsUtil.enqueue(user.getUserId(), location);
+						tourGuideService.trackUserLocation(user);
+						latencies.record(System.nanoTime() - callStart);
+						allocatedBytes.add(threadMXBean.getCurrentThreadAllocatedBytes() - allocatedBefore);
+					} finally {
+						inFlight.release();
+					}
+				});
+				records++;
+				maxUserIndex = Math.max(maxUserIndex, record.userIndex());
+			}
+		} finally {
+			inFlight.acquire(maxInFlight);
+			for (ExecutorService worker : workers) {
+				worker.shutdown();
+			}
+		}
+		long elapsedNanos = System.nanoTime() - start;
+
+		double seconds = elapsedNanos / 1e9;
+		return new Report(maxUserIndex + 1, records, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), records / seconds,
+				latencies.percentileMillis(50), latencies.percentileMillis(95),
+				latencies.percentileMillis(99), latencies.percentileMillis(99.9),
+				allocatedBytes.sum() / seconds / (1024 * 1024), records == 0 ? 0 : allocatedBytes.sum() / records);
+	}
+
+	/**
+	 * Waits until a record is due, when paced.
+	 *
+	 * @return The time the record was due at, in nanoseconds, or 0 when not paced.
+	 */
+	private long pace(long start, long traceMillis) throws InterruptedException {
+		if (speedUp <= 0) {
+			return 0;
+		}
+		long dueNanos = start + (long) (TimeUnit.MILLISECONDS.toNanos(traceMillis) / speedUp);
+		long waitNanos = dueNanos - System.nanoTime();
+		if (waitNanos > 0) {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+		return dueNanos;
+	}
+}